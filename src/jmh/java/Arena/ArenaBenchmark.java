@@ -0,0 +1,81 @@
+package Arena;
+
+import java.util.concurrent.TimeUnit;
+
+import Arena.Exceptions.RobotNotLoadedException;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks of the parts of a turn that the arena runs on its own thread: moving the entities,
+ * finding the closest enemy of the robots for their scans, and the scans of all enemies around a robot.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArenaBenchmark {
+    @Param({"4", "64", "512"})
+    public int robotCount;
+    @Param({"0", "256"})
+    public int rocketCount;
+    @Param({"500", "2000"})
+    public int arenaSize;
+
+    private Arena arena;
+    private WorldSnapshot snapshot;
+    private int nextRobot;
+    private final double[] enemies = new double[16 * Robot.enemyFields];
+    private final MatchRandom random = new MatchRandom(0);
+
+    @Setup(Level.Trial)
+    public void setUp() throws RobotNotLoadedException {
+        this.arena = BenchmarkArenas.create(BenchmarkArenas.getRobotClasses("synthetic"), robotCount, rocketCount, arenaSize);
+        this.snapshot = new WorldSnapshot();
+        this.snapshot.capture(this.arena);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.arena.shutdown();
+    }
+
+    /**
+     * Moves every robot and rocket and checks which rockets have hit a robot or ended their flight.
+     * The exploded rockets are fired again, so the benchmark keeps measuring a firefight of the same size.
+     */
+    @Benchmark
+    public void update() {
+        this.arena.update();
+        BenchmarkArenas.sustain(this.arena, rocketCount, this.random);
+    }
+
+    /**
+     * Takes the snapshot the robots observe during a turn, which includes finding the closest enemy of every robot.
+     */
+    @Benchmark
+    public WorldSnapshot captureSnapshot() {
+        this.snapshot.capture(this.arena);
+        return this.snapshot;
+    }
+
+    /**
+     * Finds the closest enemy of a single robot.
+     */
+    @Benchmark
+    public int getClosestRobot() {
+        EntityStore store = this.arena.getStore();
+        int slot = this.nextRobot++ % robotCount;
+        return this.arena.getRobotGrid().getClosestWithin(store.robotX[slot], store.robotY[slot], this.arena.getConfig().getScanRange(), slot,
+                store.robotX, store.robotY);
+    }
+
+    /**
+     * Writes the 16 closest enemies of a single robot into a reused buffer, as Robot.scanAll does.
+     */
+    @Benchmark
+    public int scanAll() {
+        return this.snapshot.scanRobots(this.nextRobot++ % robotCount, this.enemies);
+    }
+}
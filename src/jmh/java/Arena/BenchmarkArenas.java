@@ -0,0 +1,75 @@
+package Arena;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import Arena.Exceptions.RobotNotLoadedException;
+
+/**
+ * Builds the arenas the benchmarks are run on.
+ */
+final class BenchmarkArenas {
+    static final String samplesFolder = "src/main/java/Robots";
+    private static final long seed = 42;
+
+    private BenchmarkArenas() { }
+
+    /**
+     * @param robots "synthetic" for the Skirmisher of the SyntheticRobots, "samples" for the robot files bundled in the Robots folder.
+     * @return The classes of the robots.
+     */
+    static List<Class<? extends Robot>> getRobotClasses(String robots) throws RobotNotLoadedException {
+        if(robots.equals("synthetic"))
+            return Collections.singletonList(SyntheticRobots.Skirmisher.class);
+
+        File[] robotFiles = new File(samplesFolder).listFiles((folder, name) -> name.endsWith(".robot"));
+        if(robotFiles == null || robotFiles.length == 0)
+            throw new RobotNotLoadedException(String.format("No robot files found in %s", samplesFolder));
+        Arrays.sort(robotFiles);
+        List<String> robotFilePaths = new ArrayList<String>();
+        for(File robotFile : robotFiles)
+            robotFilePaths.add(robotFile.getPath());
+        return new RobotLoader().loadClasses(robotFilePaths);
+    }
+
+    /**
+     * Creates a square arena with the given robots and rockets.
+     * The rockets are aimed outside of the arena, so they fly their maximum range unless they hit a robot.
+     * Call sustain every turn to keep the number of rockets and robots the same however many turns are played.
+     * @param robotClasses The classes of the robots, which are used in turn.
+     * @param robotCount The number of robots.
+     * @param rocketCount The number of rockets, which are fired by the robots in turn.
+     * @param arenaSize The width and the height of the arena.
+     * @return The arena, which must be shut down after use.
+     */
+    static Arena create(List<Class<? extends Robot>> robotClasses, int robotCount, int rocketCount, int arenaSize) throws RobotNotLoadedException {
+        Arena arena = new Arena(seed, arenaSize, arenaSize);
+        RobotLoader robotLoader = new RobotLoader();
+        for(int i = 0; i < robotCount; i++)
+            arena.addRobot(robotLoader.newInstance(robotClasses.get(i % robotClasses.size())));
+
+        sustain(arena, rocketCount, new MatchRandom(seed));
+        return arena;
+    }
+
+    /**
+     * Restores the health of all robots, so that none is killed, and fires new rockets in place of those that have exploded.
+     * @param arena An arena created by create.
+     * @param rocketCount The number of rockets to be kept in the air.
+     * @param random The source of the directions of the new rockets.
+     */
+    static void sustain(Arena arena, int rocketCount, MatchRandom random) {
+        EntityStore store = arena.getStore();
+        Arrays.fill(store.robotHealth, 0, store.robotSlots, 100);
+        List<Robot> robots = arena.getRobots();
+        for(int i = store.rocketCount; i < rocketCount; i++) {
+            double angle = random.nextDouble() * 2 * Math.PI;
+            double targetX = arena.getWidth() / 2.0 + Math.cos(angle) * arena.getWidth();
+            double targetY = arena.getHeight() / 2.0 + Math.sin(angle) * arena.getHeight();
+            arena.sendRocket(robots.get(i % robots.size()), targetX, targetY);
+        }
+    }
+}
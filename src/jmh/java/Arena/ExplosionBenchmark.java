@@ -0,0 +1,53 @@
+package Arena;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import Arena.Exceptions.RobotNotLoadedException;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks the explosion of a rocket, which damages all the robots around it.
+ * Before every explosion a rocket is fired by one of the robots, so it explodes among the robots around the sender,
+ * and the health of the robots is restored, so that no robot is killed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExplosionBenchmark {
+    @Param({"4", "64", "512"})
+    public int robotCount;
+    @Param({"0", "256"})
+    public int rocketCount;
+    @Param({"500", "2000"})
+    public int arenaSize;
+
+    private Arena arena;
+    private int nextSender;
+
+    @Setup(Level.Trial)
+    public void setUp() throws RobotNotLoadedException {
+        this.arena = BenchmarkArenas.create(BenchmarkArenas.getRobotClasses("synthetic"), robotCount, rocketCount, arenaSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.arena.shutdown();
+    }
+
+    @Setup(Level.Invocation)
+    public void fireRocket() {
+        EntityStore store = this.arena.getStore();
+        Arrays.fill(store.robotHealth, 0, store.robotSlots, 100);
+        Robot sender = this.arena.getRobots().get(this.nextSender++ % robotCount);
+        this.arena.sendRocket(sender, arenaSize, arenaSize);
+    }
+
+    @Benchmark
+    public void explodeRocket() {
+        this.arena.explodeRocket(this.arena.getStore().rocketCount - 1);
+    }
+}
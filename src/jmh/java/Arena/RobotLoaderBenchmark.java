@@ -0,0 +1,83 @@
+package Arena;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import Arena.Exceptions.RobotNotLoadedException;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks loading a robot that has been compiled before, and the two ways its bytecode can be obtained:
+ * from the bytecode cache on disk, and by compiling the robot file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RobotLoaderBenchmark {
+    @Param({"Rabbit", "Shooter", "Sniper", "YetAnotherRobot"})
+    public String robot;
+
+    private String robotFilePath;
+    private String className;
+    private String javaCode;
+    private String key;
+    private RobotLoader robotLoader;
+    private RobotCompiler compiler;
+    private Path cacheDirectory;
+    private RobotClassCache cache;
+
+    @Setup(Level.Trial)
+    public void setUp() throws RobotNotLoadedException, IOException {
+        this.robotFilePath = String.format("%s/%s.robot", BenchmarkArenas.samplesFolder, robot);
+        this.robotLoader = new RobotLoader();
+        this.robotLoader.loadClass(this.robotFilePath);
+
+        String robotFile = new String(Files.readAllBytes(Paths.get(this.robotFilePath)), StandardCharsets.UTF_8);
+        this.className = String.format("Arena.%s", robot);
+        this.javaCode = RobotLoader.wrap(robot, robotFile);
+        this.key = RobotClassCache.keyOf(this.javaCode);
+        this.compiler = new RobotCompiler();
+        this.cacheDirectory = Files.createTempDirectory("robot-cache");
+        this.cache = new RobotClassCache(this.cacheDirectory, Long.MAX_VALUE);
+        this.cache.put(this.key, this.compiler.compile(this.className, this.javaCode));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        this.cache.clear();
+        Files.deleteIfExists(this.cacheDirectory);
+    }
+
+    /**
+     * Loads a robot whose bytecode is in the cache on disk: the robot file and the cache are read, the bytecode is instrumented
+     * and defined in a new class loader. This is what every load of an unchanged robot costs.
+     */
+    @Benchmark
+    public Robot loadFromCache() throws RobotNotLoadedException {
+        return this.robotLoader.load(this.robotFilePath);
+    }
+
+    /**
+     * Reads the bytecode of a robot from the cache on disk.
+     */
+    @Benchmark
+    public Map<String, byte[]> readCache() {
+        return this.cache.get(this.key);
+    }
+
+    /**
+     * Compiles a robot, which is what loading a new or changed robot file costs.
+     */
+    @Benchmark
+    public Map<String, byte[]> compile() throws RobotNotLoadedException {
+        return this.compiler.compile(this.className, this.javaCode);
+    }
+}
@@ -0,0 +1,43 @@
+package Arena;
+
+import java.util.concurrent.TimeUnit;
+
+import Arena.Exceptions.RobotNotLoadedException;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks a turn of the robots: taking the snapshot, running all robots on their threads and applying their intents.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RobotTurnBenchmark {
+    @Param({"4", "64", "512"})
+    public int robotCount;
+    @Param({"0", "256"})
+    public int rocketCount;
+    @Param({"500", "2000"})
+    public int arenaSize;
+    @Param({"synthetic", "samples"})
+    public String robots;
+
+    private Arena arena;
+
+    @Setup(Level.Trial)
+    public void setUp() throws RobotNotLoadedException {
+        this.arena = BenchmarkArenas.create(BenchmarkArenas.getRobotClasses(robots), robotCount, rocketCount, arenaSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.arena.shutdown();
+    }
+
+    @Benchmark
+    public void runRobotsForOneTurn() {
+        this.arena.runRobotsForOneTurn();
+    }
+}
@@ -1,60 +1,229 @@
 package Arena;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.*;
-import java.util.stream.Collectors;
 
 import Arena.Exceptions.NoRobotFilesFoundException;
 import Arena.Exceptions.RobotNotLoadedException;
+import lombok.AccessLevel;
 import lombok.Getter;
 
-import javax.swing.*;
-
 public class Arena {
+    /**
+     * How the codes of the robots are run.
+     */
+    enum ExecutionMode {
+        /**
+         * The code of every robot is run once per turn on a worker thread of its own.
+         */
+        TURNS,
+        /**
+         * The code of every robot runs for the whole battle on a virtual thread, and its turns end at its calls to scan, move and fire.
+         */
+        CONTINUOUS
+    }
+
     private @Getter List<Robot> robots;
-    private List<Rocket> rockets;
-    private @Getter final int width = 500;
-    private @Getter final int height = 500;
-    private final int rocketExplosionRadius = 25;
-    private final int rocketExplosionDamage = 10;
-    private ArenaGUI arenaGUI;
-    private RobotLoader robotLoader;
-
-    private Arena() {
-        this.arenaGUI = new ArenaGUI();
+    private @Getter final int width;
+    private @Getter final int height;
+    private @Getter(AccessLevel.PACKAGE) final ArenaConfig config;
+    private final int gridCellSize = 50;
+    private @Getter final long seed;
+    private @Getter final ExecutionMode executionMode;
+    /**
+     * The number of turns played so far, which is also the number of the next turn.
+     */
+    private @Getter int turn;
+    private MatchRandom random;
+    private @Getter(AccessLevel.PACKAGE) EntityStore store;
+    private @Getter(AccessLevel.PACKAGE) SpatialGrid robotGrid;
+    private Robot[] robotsBySlot;
+    private int[] robotsInExplosion;
+    private int[] robotsNearRocket;
+    private final ArrayDeque<Rocket> rocketPool = new ArrayDeque<Rocket>();
+    private List<ArenaListener> listeners;
+    private TurnScheduler robotScheduler;
+    private WorldSnapshot snapshot;
+    private WorldSnapshot nextSnapshot;
+
+    /**
+     * Creates an arena with a random seed.
+     */
+    Arena() {
+        this(MatchRandom.mix(System.nanoTime()));
+    }
+
+    /**
+     * @param seed The seed of the battle. Battles between the same robots with the same seed play out the same way,
+     * as long as no robot blocks until the turn timeout.
+     */
+    Arena(long seed) {
+        this(seed, ArenaConfig.defaults, ExecutionMode.TURNS);
+    }
+
+    /**
+     * @param seed The seed of the battle.
+     * @param width The width of the arena.
+     * @param height The height of the arena.
+     */
+    Arena(long seed, int width, int height) {
+        this(seed, width, height, ExecutionMode.TURNS);
+    }
+
+    /**
+     * @param seed The seed of the battle.
+     * @param width The width of the arena.
+     * @param height The height of the arena.
+     * @param executionMode How the codes of the robots are run.
+     */
+    Arena(long seed, int width, int height, ExecutionMode executionMode) {
+        this(seed, ArenaConfig.defaults.withWidth(width).withHeight(height), executionMode);
+    }
+
+    /**
+     * @param seed The seed of the battle.
+     * @param config The rules of the arena.
+     * @param executionMode How the codes of the robots are run.
+     */
+    Arena(long seed, ArenaConfig config, ExecutionMode executionMode) {
+        this.seed = seed;
+        this.executionMode = executionMode;
+        this.config = config;
+        this.width = config.getWidth();
+        this.height = config.getHeight();
+        this.random = new MatchRandom(seed);
+        this.listeners = new ArrayList<ArenaListener>();
         this.robots = new ArrayList<Robot>();
-        this.rockets = new ArrayList<Rocket>();
-        this.robotLoader = new RobotLoader();
+        this.store = new EntityStore(width, height);
+        this.robotGrid = new SpatialGrid(width, height, gridCellSize);
+        this.robotsBySlot = new Robot[0];
+        this.robotsInExplosion = new int[0];
+        this.robotsNearRocket = new int[0];
+        this.robotScheduler = executionMode == ExecutionMode.CONTINUOUS
+                ? new ContinuousRobotScheduler(config.getTurnTimeoutMillis(), config.getInstructionBudget())
+                : new RobotScheduler(config.getTurnTimeoutMillis(), config.getInstructionBudget());
+        this.snapshot = new WorldSnapshot();
+        this.nextSnapshot = new WorldSnapshot();
+    }
+
+    /**
+     * Creates a headless arena in the state of the given checkpoint, see ArenaCheckpoint.fork.
+     * Its storage and its spatial grid share the state of the checkpoint until they change it.
+     */
+    Arena(ArenaCheckpoint checkpoint) {
+        this(checkpoint.getSeed(), checkpoint.getConfig(), checkpoint.getExecutionMode());
+        this.turn = checkpoint.getTurn();
+        this.random = checkpoint.getRandom().copy();
+        this.store = checkpoint.getStore().share();
+        this.robotGrid = checkpoint.getRobotGrid().share();
+        this.robotsBySlot = checkpoint.newRobots();
+        this.robotsInExplosion = new int[this.robotsBySlot.length];
+        this.robotsNearRocket = new int[this.robotsBySlot.length];
+        for(int slot = 0; slot < this.robotsBySlot.length; slot++)
+            this.robotsBySlot[slot].attach(this.store, slot);
+        for(int slot : checkpoint.getRemainingRobots()) {
+            this.robots.add(this.robotsBySlot[slot]);
+            this.robotScheduler.register(this.robotsBySlot[slot]);
+        }
+        for(int slot = 0; slot < this.store.rocketCount; slot++) {
+            Rocket rocket = new Rocket(this.robotsBySlot[this.store.rocketSender[slot]], this.store);
+            rocket.setSlot(slot);
+            this.store.rockets[slot] = rocket;
+        }
+    }
+
+    /**
+     * Registers a listener that will be notified of the events of the battle.
+     * Without any listeners the arena runs headless.
+     * @param listener The listener to be added.
+     */
+    void addListener(ArenaListener listener) {
+        this.listeners.add(listener);
     }
 
     /**
      * Updates the arena to reflect the results of the turn that all robots have played.
      */
-    private void update() {
-        Iterator<Robot> robotIterator = this.robots.iterator();
-        while(robotIterator.hasNext()) {
-            Robot robot = robotIterator.next();
-            Location newLocation = Utils.getNewLocationBy(robot.getLocation(), robot.getDirection(), robot.getSpeed());
-            robot.setLocation(newLocation);
-            robot.getInfo().setText(Utils.getRobotInfoDisplayText(robot));
-        }
-
-        Iterator<Rocket> rocketIterator = this.rockets.iterator();
-        while(rocketIterator.hasNext()) {
-            Rocket rocket = rocketIterator.next();
-            Location newLocation = Utils.getNewLocationBy(rocket.getLocation(), rocket.getDirection(), rocket.getSpeed());
-            rocket.setLocation(newLocation);
-            if(Utils.getDistanceBetween(rocket.getLocation(), rocket.getTarget()) < 1) {
-                explodeRocket(rocket);
-                rocketIterator.remove();
+    void update() {
+        moveEntities();
+        explodeRockets();
+    }
+
+    /**
+     * Moves the robots and the rockets, and keeps the spatial index of the robots up to date.
+     */
+    private void moveEntities() {
+        this.store.move();
+
+        for(int i = 0; i < this.robots.size(); i++) {
+            int slot = this.robots.get(i).getSlot();
+            this.robotGrid.update(slot, this.store.robotX[slot], this.store.robotY[slot]);
+        }
+    }
+
+    /**
+     * Explodes the rockets that have hit a robot on the path they have flown during the turn,
+     * and the rockets whose flight has ended at their target, at their maximum range or at the border of the arena.
+     * The path is checked as a whole rather than where the rocket has ended up, so a rocket cannot fly through a robot.
+     */
+    private void explodeRockets() {
+        // iterating backwards, since an exploded rocket's slot is taken over by the last rocket
+        for(int slot = this.store.rocketCount - 1; slot >= 0; slot--) {
+            double impact = getImpactAlongPath(slot);
+            if(impact >= 0) {
+                this.store.rocketX[slot] = this.store.rocketPreviousX[slot] + impact * (this.store.rocketX[slot] - this.store.rocketPreviousX[slot]);
+                this.store.rocketY[slot] = this.store.rocketPreviousY[slot] + impact * (this.store.rocketY[slot] - this.store.rocketPreviousY[slot]);
+                explodeRocket(slot);
+            } else if(this.store.rocketRemainingDistance[slot] <= 0) {
+                explodeRocket(slot);
             }
         }
     }
 
+    /**
+     * Finds the first robot, other than its sender, that the rocket has passed within the impact radius of during the turn.
+     * @param slot The slot of the rocket.
+     * @return How far along its path the rocket has hit the robot, from 0 at its previous location to 1 at its current location,
+     * or -1 if it has not hit any robot.
+     */
+    private double getImpactAlongPath(int slot) {
+        double startX = this.store.rocketPreviousX[slot];
+        double startY = this.store.rocketPreviousY[slot];
+        double pathX = this.store.rocketX[slot] - startX;
+        double pathY = this.store.rocketY[slot] - startY;
+        double pathLengthSquared = pathX * pathX + pathY * pathY;
+        int robotsNearRocket = this.robotGrid.collectWithin(startX + pathX / 2, startY + pathY / 2,
+                Math.sqrt(pathLengthSquared) / 2 + this.config.getImpactRadius(), this.store.robotX, this.store.robotY, this.robotsNearRocket);
+
+        double impact = -1;
+        for(int i = 0; i < robotsNearRocket; i++) {
+            int robotSlot = this.robotsNearRocket[i];
+            if(robotSlot == this.store.rocketSender[slot])
+                continue;
+            double robotX = this.store.robotX[robotSlot] - startX;
+            double robotY = this.store.robotY[robotSlot] - startY;
+            // the point of the path closest to the robot
+            double closest = pathLengthSquared > 0 ? Math.max(0, Math.min(1, (robotX * pathX + robotY * pathY) / pathLengthSquared)) : 0;
+            double distance = Utils.getDistanceBetween(closest * pathX, closest * pathY, robotX, robotY);
+            if(distance <= this.config.getImpactRadius() && (impact < 0 || closest < impact))
+                impact = closest;
+        }
+        return impact;
+    }
+
+    /**
+     * @return The rockets in the air.
+     */
+    List<Rocket> getRockets() {
+        return Arrays.asList(this.store.rockets).subList(0, this.store.rocketCount);
+    }
+
     /**
      *
      * @return true if there is a winner of the battle, false otherwise.
@@ -68,48 +237,105 @@ public class Arena {
      */
     private void winningSequence() {
         Robot winner = this.robots.get(0);
-        this.arenaGUI.declareWinner(winner.getClass().getSimpleName());
+        for(ArenaListener listener : this.listeners)
+            listener.winnerDeclared(winner);
     }
 
     /**
      * Executes the draw sequence after the match is declared as a draw.
      */
     private void drawSequence() {
-        this.arenaGUI.declareDraw();
+        for(ArenaListener listener : this.listeners)
+            listener.drawDeclared();
     }
 
     /**
-     * Loads and initializes a robot from the given file system path to the robot description file.
-     * @param robotFilePath Path to the robot file written in the custom robot language.
-     * @throws RobotNotLoadedException If the dynamic class loader fails to load the robot file, this exception will be thrown.
+     * Places the given robot at a random location in the arena.
+     * @param robot A newly created robot that is not in any other arena.
      */
-    private void addRobot(String robotFilePath) throws RobotNotLoadedException {
-        Robot robot = robotLoader.load(robotFilePath);
-        robot.setArena(this);
-
-        robot.setLocation(Utils.getRandomLocation());
-        robot.setElement(this.arenaGUI.addRobotElement());
-        robot.setInfo(this.arenaGUI.addRobotInfoToScoreboard(robot.getClass().getSimpleName()));
+    void addRobot(Robot robot) {
+        Location location = Utils.getRandomLocation(this.random, width, height);
+        int slot = this.store.addRobot(location.getX(), location.getY(), this.config.getInitialHealth());
+        robot.attach(this.store, slot);
+        robot.setRandom(this.random.split());
+        if(slot >= this.robotsBySlot.length) {
+            this.robotsBySlot = Arrays.copyOf(this.robotsBySlot, this.store.robotX.length);
+            this.robotsInExplosion = new int[this.store.robotX.length];
+            this.robotsNearRocket = new int[this.store.robotX.length];
+        }
+        this.robotsBySlot[slot] = robot;
 
         this.robots.add(robot);
+        this.robotGrid.insert(slot, location.getX(), location.getY());
+        this.robotScheduler.register(robot);
+        for(ArenaListener listener : this.listeners)
+            listener.robotAdded(robot);
     }
 
     /**
      * Calls all the custom robot codes that will run for one turn. This function should be called once every turn.
+     * The robots run concurrently and observe a snapshot of the arena taken at the beginning of the turn.
+     * Their moves and fired rockets are applied afterwards in the order the robots have entered the arena,
+     * so the outcome of the turn does not depend on how the robot threads are scheduled.
+     * If the thread is interrupted meanwhile, the turn is stopped and nothing is applied.
      */
-    private void runRobotsForOneTurn() {
-        Iterator<Robot> robotIterator = this.robots.iterator();
-        while(robotIterator.hasNext()) {
-            Robot robot = robotIterator.next();
-            final ExecutorService executor = Executors.newSingleThreadExecutor();
-            final Future future = executor.submit(robot);
-            try {
-                future.get(20, TimeUnit.MILLISECONDS);
-            } catch(TimeoutException | InterruptedException | ExecutionException e) {
-                e.printStackTrace();
-                removeRobotFromGUI(robot);
-                robotIterator.remove();
-            }
+    void runRobotsForOneTurn() {
+        WorldSnapshot previousSnapshot = this.snapshot;
+        this.nextSnapshot.capture(this);
+        this.snapshot = this.nextSnapshot;
+        this.nextSnapshot = previousSnapshot;
+
+        for(Robot robot : this.robotScheduler.runForOneTurn(this.robots))
+            removeRobot(robot);
+        // the turn has been stopped, and the robots whose turn has been cancelled may still be writing their intents
+        if(Thread.currentThread().isInterrupted())
+            return;
+
+        for(Robot robot : this.robots) {
+            robot.applyMoveIntent();
+            robot.applyFireIntents(this);
+        }
+    }
+
+    /**
+     * Accepts the rocket sent from the robot. The rocket objects of exploded rockets are reused.
+     * @param sender The robot that fires the rocket.
+     * @param targetX The x coordinate of the target.
+     * @param targetY The y coordinate of the target.
+     */
+    void sendRocket(Robot sender, double targetX, double targetY) {
+        Rocket rocket = this.rocketPool.poll();
+        if(rocket == null)
+            rocket = new Rocket(sender, this.store);
+        else
+            rocket.setSender(sender);
+        this.store.addRocket(rocket, sender.getSlot(), targetX, targetY, rocket.getSpeed(), this.config.getMaxRocketRange());
+        for(ArenaListener listener : this.listeners)
+            listener.rocketFired(rocket);
+    }
+
+    /**
+     * Explodes the given rocket and handles all corresponding events.
+     * @param slot The slot of the rocket to be exploded.
+     */
+    void explodeRocket(int slot) {
+        Rocket rocket = this.store.rockets[slot];
+        for(ArenaListener listener : this.listeners)
+            listener.rocketExploded(rocket);
+        this.rocketPool.push(rocket);
+
+        int robotsInExplosion = this.robotGrid.collectWithin(this.store.rocketX[slot], this.store.rocketY[slot],
+                this.config.getExplosionRadius(), this.store.robotX, this.store.robotY, this.robotsInExplosion);
+        int sender = this.store.rocketSender[slot];
+        this.store.removeRocket(slot);
+        for(int i = 0; i < robotsInExplosion; i++) {
+            int robotSlot = this.robotsInExplosion[i];
+            this.store.robotHealth[robotSlot] -= this.config.getExplosionDamage();
+            this.store.robotDamageTaken[robotSlot] += this.config.getExplosionDamage();
+            if(robotSlot != sender)
+                this.store.robotDamageDealt[sender] += this.config.getExplosionDamage();
+            if(this.store.robotHealth[robotSlot] <= 0)
+                removeRobot(this.robotsBySlot[robotSlot]);
         }
     }
 
@@ -119,105 +345,275 @@ public class Arena {
      * @return The number of rockets in the air.
      */
     int rocketsInTheAirFor(Robot robot) {
-        return (int) this.rockets
-                .stream()
-                .filter(rocket -> rocket.getSender() == robot)
-                .count();
+        return this.store.robotRocketsInTheAir[robot.getSlot()];
     }
 
     /**
-     * Accepts the sent rocket from the robot
-     * @param rocket The rocket that is sent.
+     * Kills the robot, removes it from the arena and notifies the listeners.
+     * @param robot The robot to be removed.
      */
-    void sendRocket(Rocket rocket) {
-        JPanel element = new JPanel();
-        this.arenaGUI.addRocketElement(element);
-        rocket.setElement(element);
+    private void removeRobot(Robot robot) {
+        this.robots.remove(robot);
+        this.robotGrid.remove(robot.getSlot());
+        this.store.stopRobot(robot.getSlot());
+        this.robotScheduler.retire(robot);
+        for(ArenaListener listener : this.listeners)
+            listener.robotRemoved(robot);
+    }
 
-        this.rockets.add(rocket);
+    /**
+     * @return A description of the rules of the arena, which together with the robots and the seed determines the outcome of a battle.
+     */
+    String getRules() {
+        return String.format("arena:%dx%d scan:%d explosion:%d/%d rocket:%d/%d budget:%d health:%d turns:%d mode:%s", width, height,
+                config.getScanRange(), config.getExplosionRadius(), config.getExplosionDamage(), config.getImpactRadius(), config.getMaxRocketRange(),
+                config.getInstructionBudget(), config.getInitialHealth(), config.getMaxTurns(), executionMode.name().toLowerCase());
     }
 
     /**
-     * Explodes the given rocket and handles all corresponding events.
-     * @param rocket The rocket to be exploded.
-     */
-    private void explodeRocket(Rocket rocket) {
-        this.arenaGUI.removeElement(rocket.getElement());
-
-        Iterator<Robot> robotIterator = this.robots.iterator();
-        while(robotIterator.hasNext()) {
-            Robot robot = robotIterator.next();
-            if(Utils.getDistanceBetween(rocket.getLocation(), robot.getLocation()) <= rocketExplosionRadius) {
-                robot.decreaseHealthBy(rocketExplosionDamage);
-                if(robot.getHealth() <= 0) {
-                    removeRobotFromGUI(robot);
-                    robotIterator.remove();
-                }
+     * Takes a checkpoint of the arena, from which independent copies of the arena can be forked.
+     * It must be called between two turns on the thread that plays the battle, e.g. by a listener at the end of a turn.
+     * @return The checkpoint, from which the forks play the next turn on.
+     * @throws IllegalStateException If the robots run continuously, since the programs of the robots cannot be copied.
+     */
+    ArenaCheckpoint checkpoint() {
+        if(this.executionMode == ExecutionMode.CONTINUOUS)
+            throw new IllegalStateException("An arena whose robots run continuously cannot be forked");
+        int[] remainingRobots = new int[this.robots.size()];
+        for(int i = 0; i < remainingRobots.length; i++)
+            remainingRobots[i] = this.robots.get(i).getSlot();
+        return new ArenaCheckpoint(this, this.turn, this.random.copy(), this.store.copy(), this.robotGrid.copy(),
+                Arrays.copyOf(this.robotsBySlot, this.store.robotSlots), remainingRobots);
+    }
+
+    /**
+     * Lets another robot take over the place of the given robot, with its slot, location, health, rockets and random numbers,
+     * e.g. to play out in a fork of the arena what happens if the robot behaves differently from here on.
+     * It must be called between two turns. The listeners are not notified.
+     * @param robot A robot remaining in the arena.
+     * @param replacement A newly created robot that is not in any arena.
+     */
+    void replaceRobot(Robot robot, Robot replacement) {
+        int slot = robot.getSlot();
+        replacement.attach(this.store, slot);
+        replacement.setRandom(robot.getRandom());
+        this.robotsBySlot[slot] = replacement;
+        this.robots.set(this.robots.indexOf(robot), replacement);
+        for(int i = 0; i < this.store.rocketCount; i++) {
+            if(this.store.rocketSender[i] == slot)
+                this.store.rockets[i].setSender(replacement);
+        }
+        this.robotScheduler.retire(robot);
+        this.robotScheduler.register(replacement);
+    }
+
+    /**
+     * Plays the battle as fast as possible, until there is a winner or the maximum amount of turns is reached.
+     * @return The outcome of the battle.
+     */
+    MatchResult play() throws InterruptedException {
+        return play(0);
+    }
+
+    /**
+     * Plays the battle until there is a winner or the maximum amount of turns is reached.
+     * The turns are played at a fixed rate, independent of how fast the listeners display them.
+     * @param turnsPerSecond The number of turns played per second, or 0 to play them as fast as possible.
+     * @return The outcome of the battle.
+     * @throws InterruptedException If the thread is interrupted, e.g. while pacing the turns or waiting for the robots.
+     */
+    MatchResult play(double turnsPerSecond) throws InterruptedException {
+        TickClock clock = new TickClock(turnsPerSecond);
+        try {
+            MatchResult result = null;
+            while(result == null) {
+                clock.awaitTick();
+                result = playTurn();
+                if(Thread.interrupted())
+                    throw new InterruptedException();
             }
+            return result;
+        } finally {
+            shutdown();
         }
     }
 
     /**
-     * Kills the robot and removes it from the arena.
-     * @param robot The robot to be killed.
+     * Plays at most the given number of turns as fast as possible, e.g. a short rollout of a forked arena, and then stops the threads of the robots.
+     * @param turns The number of turns to be played.
+     * @return The outcome of the battle if it has ended within these turns, null otherwise.
      */
-    private void removeRobotFromGUI(Robot robot) {
-        this.arenaGUI.removeElement(robot.getElement());
-        this.arenaGUI.removeElement(robot.getInfo());
+    MatchResult rollout(int turns) {
+        try {
+            return playTurns(turns);
+        } finally {
+            shutdown();
+        }
     }
 
     /**
-     * Finds the distance to the closest robot in the arena from the given robot within the range.
-     * @param robot The Robot object for which the search will be performed.
-     * @return The distance to the closest robot. If no robot is present in the scanned area, returns -1.0.
+     * Plays at most the given number of turns as fast as possible, and keeps the threads of the robots for the next turns,
+     * e.g. to measure a scenario in several steps. The arena must be shut down once it is not played anymore.
+     * It stops early if the thread is interrupted.
+     * @param turns The number of turns to be played.
+     * @return The outcome of the battle if it has ended within these turns, null otherwise.
      */
-    Robot getClosestRobotFrom(Robot robot) {
-         List<Robot> robotsInRange = this.robots
-                .stream()
-                .filter(enemyRobot -> Utils.isInsideTheScanningArea(robot.getLocation(), enemyRobot.getLocation()) && enemyRobot != robot)
-                .collect(Collectors.toList());
-         if(robotsInRange.isEmpty())
-             return null;
+    MatchResult playTurns(int turns) {
+        for(int i = 0; i < turns && !Thread.currentThread().isInterrupted(); i++) {
+            MatchResult result = playTurn();
+            if(result != null)
+                return result;
+        }
+        return null;
+    }
 
-         Robot closestRobot = robotsInRange.get(0);
-         double closestDistance = Utils.getDistanceBetween(robot.getLocation(), closestRobot.getLocation());
-         for(Robot robotInRange : robotsInRange) {
-             double distance = Utils.getDistanceBetween(robot.getLocation(), robotInRange.getLocation());
-             if(distance < closestDistance) {
-                 closestRobot = robotInRange;
-                 closestDistance = distance;
-             }
-         }
-         return closestRobot;
+    /**
+     * Plays the next turn of the battle. If the thread is interrupted while the robots play, the turn is stopped before anything is applied.
+     * @return The outcome of the battle if it has ended with this turn, null otherwise.
+     */
+    private MatchResult playTurn() {
+        ArenaMetrics metrics = ArenaMetrics.get();
+        int turn = this.turn;
+        for(ArenaListener listener : this.listeners)
+            listener.turnStarted(turn);
+        long phaseStart = System.nanoTime();
+        runRobotsForOneTurn();
+        if(Thread.currentThread().isInterrupted())
+            return null;
+        phaseStart = metrics.endPhase(ArenaMetrics.Phase.ROBOTS, phaseStart);
+        moveEntities();
+        phaseStart = metrics.endPhase(ArenaMetrics.Phase.MOVE, phaseStart);
+        explodeRockets();
+        phaseStart = metrics.endPhase(ArenaMetrics.Phase.ROCKETS, phaseStart);
+        this.turn = turn + 1;
+        for(ArenaListener listener : this.listeners)
+            listener.turnEnded(turn, this.robots, getRockets());
+        metrics.endPhase(ArenaMetrics.Phase.LISTENERS, phaseStart);
+        metrics.turnPlayed();
+        if(thereIsAWinner()) {
+            winningSequence();
+            return newResult(this.robots.get(0).getSlot());
+        }
+        if(this.turn >= this.config.getMaxTurns()) {
+            drawSequence();
+            return newResult(-1);
+        }
+        return null;
     }
 
-    public static void main(String[] args) throws RobotNotLoadedException, InterruptedException, NoRobotFilesFoundException {
-        Arena arena = new Arena();
+    /**
+     * @param winner The slot of the winner, or -1 for a draw.
+     * @return The outcome of the battle, with the damage dealt and taken by every robot.
+     */
+    private MatchResult newResult(int winner) {
+        return new MatchResult(winner, this.turn, Arrays.copyOf(this.store.robotDamageDealt, this.store.robotSlots),
+                Arrays.copyOf(this.store.robotDamageTaken, this.store.robotSlots));
+    }
 
-        File robotsFolder = new File("src/main/java/Robots");
-        File[] robotFilesArray = robotsFolder.listFiles();
+    /**
+     * Stops the threads of the robots and closes the listeners that hold a resource, e.g. a ReplayWriter or a SpectatorServer,
+     * even if the battle has been aborted. This is done by play, and only needs to be called for an arena whose battle is not played.
+     */
+    void shutdown() {
+        this.robotScheduler.shutdown();
+        for(ArenaListener listener : this.listeners) {
+            if(!(listener instanceof Closeable))
+                continue;
+            try {
+                ((Closeable) listener).close();
+            } catch(IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
 
-        if(robotFilesArray == null || robotFilesArray.length == 0)
-            throw new NoRobotFilesFoundException("No robot files found in the Robots folder");
-
-        List<File> robotFiles = Arrays.asList(robotFilesArray);
-        if(robotFiles.size() == 1)
-            robotFiles.add(robotFiles.get(0));
-
-        for(File robotFile: robotFiles)
-            arena.addRobot(robotFile.getPath());
-
-        for(int turn=0; turn < 5000; turn++){
-            arena.arenaGUI.updateTurns(turn);
-            arena.runRobotsForOneTurn();
-            arena.update();
-            if(arena.thereIsAWinner()) {
-                arena.winningSequence();
-                return;
+    /**
+     * Entry point of the game. Pass --headless to run the battle without the GUI and without pacing the turns,
+     * in which case the battle runs as fast as the robots allow.
+     * Pass --record followed by a file name to record a replay of the battle, which can be watched with the ReplayPlayer.
+     * Pass --seed followed by a number to play the battle with the given seed, e.g. to reproduce a battle seen before.
+     * Pass --continuous to run the robot codes as programs that live for the whole battle, see ExecutionMode.
+     * Pass --tick-rate followed by a number to play that many turns per second, or 0 to play them as fast as possible.
+     * By default, 60 turns per second are played when the battle is watched, and as many as possible when it is headless.
+     * Pass --robots followed by a folder to take the robots from that folder instead of the Robots folder. The robots are the *.robot files
+     * of the folder, which enter the arena in the order of their names, so a seed plays the same battle on every machine.
+     * Pass --spectators followed by a port or unix: and a socket path to stream the battle to SpectatorClients,
+     * in which case 60 turns per second are played by default even when the battle is headless.
+     * The outcome of the battle is appended to the MatchResultStore, see MatchResultStore.getDefaultFile.
+     */
+    public static void main(String[] args) throws RobotNotLoadedException, InterruptedException, NoRobotFilesFoundException, IOException {
+        boolean headless = false;
+        Double tickRate = null;
+        String replayFile = null;
+        String spectatorAddress = null;
+        Long seed = null;
+        ExecutionMode executionMode = ExecutionMode.TURNS;
+        String robotsFolderPath = "src/main/java/Robots";
+        for(int i = 0; i < args.length; i++) {
+            switch(args[i]) {
+                case "--headless": headless = true; break;
+                case "--record": replayFile = args[++i]; break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--continuous": executionMode = ExecutionMode.CONTINUOUS; break;
+                case "--robots": robotsFolderPath = args[++i]; break;
+                case "--tick-rate": tickRate = Double.parseDouble(args[++i]); break;
+                case "--spectators": spectatorAddress = args[++i]; break;
             }
-            Thread.sleep(1000/60);
+        }
+        Arena arena = new Arena(seed != null ? seed : MatchRandom.mix(System.nanoTime()), ArenaConfig.defaults, executionMode);
+        System.out.println(String.format("Seed: %d", arena.getSeed()));
+        if(replayFile != null)
+            arena.addListener(new ReplayWriter(Paths.get(replayFile), arena.getWidth(), arena.getHeight()));
+        SpectatorServer spectatorServer = null;
+        if(spectatorAddress != null) {
+            spectatorServer = new SpectatorServer(spectatorAddress, arena.getWidth(), arena.getHeight());
+            arena.addListener(spectatorServer);
+        }
+        if(headless) {
+            arena.addListener(new ArenaListener() {
+                @Override
+                public void winnerDeclared(Robot winner) {
+                    System.out.println(String.format("WINNER: %s", winner.getName()));
+                }
+
+                @Override
+                public void drawDeclared() {
+                    System.out.println("IT'S A DRAW");
+                }
+            });
+        }
+        else {
+            arena.addListener(new ArenaGUI(arena.getConfig().getMaxTurns()));
         }
 
-        arena.drawSequence();
+        File robotsFolder = new File(robotsFolderPath);
+        File[] robotFilesArray = robotsFolder.listFiles((folder, name) -> name.endsWith(".robot"));
+
+        if(robotFilesArray == null || robotFilesArray.length == 0)
+            throw new NoRobotFilesFoundException(String.format("No robot files found in the %s folder", robotsFolder.getName()));
+        // the order of the robots decides their slots and random draws, so it must not depend on the file system
+        Arrays.sort(robotFilesArray);
+
+        List<String> robotFilePaths = new ArrayList<String>();
+        for(File robotFile : robotFilesArray)
+            robotFilePaths.add(robotFile.getPath());
+        if(robotFilePaths.size() == 1)
+            robotFilePaths.add(robotFilePaths.get(0));
+
+        RobotLoader robotLoader = new RobotLoader();
+        List<String> robotNames = RobotLoader.getRobotNames(robotFilePaths);
+        List<Class<? extends Robot>> robotClasses = robotLoader.loadClasses(robotFilePaths);
+        for(int i = 0; i < robotClasses.size(); i++) {
+            Robot robot = robotLoader.newInstance(robotClasses.get(i));
+            robot.setName(robotNames.get(i));
+            arena.addRobot(robot);
+        }
+
+        MatchResult result = arena.play(tickRate != null ? tickRate : headless && spectatorServer == null ? 0 : 60);
+        try(MatchResultStore resultStore = new MatchResultStore(MatchResultStore.getDefaultFile())) {
+            resultStore.append(robotNames, arena.getSeed(), result);
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
     }
 }
@@ -0,0 +1,60 @@
+package Arena;
+
+import java.awt.*;
+import javax.swing.*;
+
+/**
+ * Draws the robots and the rockets of a RenderFrame onto a single component, between their previous locations and their locations in the frame.
+ * Drawing all entities in one pass keeps the cost of a frame independent of how many rockets are fired,
+ * since no component is added, laid out or removed while the battle is played.
+ * It must only be used on the event dispatch thread. Swing paints it into an off-screen buffer first, so frames do not flicker.
+ */
+class ArenaCanvas extends JComponent {
+    private static final int robotSize = 20;
+    private static final int rocketSize = 5;
+
+    private RenderFrame frame;
+    private double progress;
+
+    ArenaCanvas() {
+        setOpaque(true);
+        setDoubleBuffered(true);
+        setBackground(Color.WHITE);
+        setBorder(BorderFactory.createLineBorder(Color.BLACK));
+    }
+
+    /**
+     * Shows the given frame at the next repaint.
+     * @param frame The frame to be drawn.
+     * @param progress How far the entities have moved towards their locations in the frame, as returned by RenderFrame.getProgress.
+     */
+    void setFrame(RenderFrame frame, double progress) {
+        this.frame = frame;
+        this.progress = progress;
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics graphics) {
+        graphics.setColor(getBackground());
+        graphics.fillRect(0, 0, getWidth(), getHeight());
+        RenderFrame frame = this.frame;
+        if(frame == null)
+            return;
+
+        graphics.setColor(Color.GREEN);
+        for(int i = 0; i < frame.robotCount; i++) {
+            graphics.fillRect(interpolate(frame.previousRobotX[i], frame.robotX[i]), interpolate(frame.previousRobotY[i], frame.robotY[i]),
+                    robotSize, robotSize);
+        }
+        graphics.setColor(Color.RED);
+        for(int i = 0; i < frame.rocketCount; i++) {
+            graphics.fillRect(interpolate(frame.previousRocketX[i], frame.rocketX[i]), interpolate(frame.previousRocketY[i], frame.rocketY[i]),
+                    rocketSize, rocketSize);
+        }
+    }
+
+    private int interpolate(double previousValue, double value) {
+        return (int) (previousValue + (value - previousValue) * this.progress);
+    }
+}
@@ -0,0 +1,147 @@
+package Arena;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * The state of an arena between two turns, from which any number of independent arenas can be forked,
+ * e.g. to play out what happens if a robot behaves differently from here on. A checkpoint holds the turn number,
+ * the locations, motions and health of the robots, the rockets in the air, the random generators of the arena and the robots,
+ * and the fields of the robot objects.
+ *
+ * A checkpoint never changes once it has been taken, so it can be forked from many threads at the same time.
+ * The forks share its state copy-on-write: a fork copies the EntityStore when it plays its first turn,
+ * and the cells of the SpatialGrid as robots enter and leave them, so forking thousands of arenas costs little more than their robot objects.
+ */
+@Getter(AccessLevel.PACKAGE)
+class ArenaCheckpoint {
+    private final long seed;
+    private final ArenaConfig config;
+    private final Arena.ExecutionMode executionMode;
+    private final int turn;
+    private final MatchRandom random;
+    private final EntityStore store;
+    private final SpatialGrid robotGrid;
+    private @Getter(AccessLevel.NONE) final List<RobotState> robots;
+    /**
+     * The slots of the robots remaining in the arena, in the order they play their turns.
+     */
+    private @Getter(AccessLevel.NONE) final int[] remainingRobots;
+
+    /**
+     * Captures the given state, which is copied from the arena, so the arena can go on playing.
+     * @param robotsBySlot The robots that have entered the arena, including the ones that have left it, indexed by their slots.
+     */
+    ArenaCheckpoint(Arena arena, int turn, MatchRandom random, EntityStore store, SpatialGrid robotGrid, Robot[] robotsBySlot, int[] remainingRobots) {
+        this.seed = arena.getSeed();
+        this.config = arena.getConfig();
+        this.executionMode = arena.getExecutionMode();
+        this.turn = turn;
+        this.random = random;
+        this.store = store;
+        this.robotGrid = robotGrid;
+        this.robots = new ArrayList<RobotState>();
+        for(Robot robot : robotsBySlot)
+            this.robots.add(new RobotState(robot));
+        this.remainingRobots = remainingRobots;
+    }
+
+    /**
+     * @return A new headless arena in the state of this checkpoint, with new robot objects,
+     * which plays from the next turn on independently of the arena the checkpoint was taken from and of the other forks.
+     */
+    Arena fork() {
+        return new Arena(this);
+    }
+
+    /**
+     * @return New robots in the state of the robots of the checkpoint, indexed by their slots. They are not attached to any storage yet.
+     */
+    Robot[] newRobots() {
+        Robot[] robots = new Robot[this.robots.size()];
+        for(int slot = 0; slot < robots.length; slot++)
+            robots[slot] = this.robots.get(slot).newRobot();
+        return robots;
+    }
+
+    /**
+     * @return The slots of the robots remaining in the arena, in the order they play their turns.
+     */
+    int[] getRemainingRobots() {
+        return this.remainingRobots.clone();
+    }
+
+    /**
+     * Copies an array, and the arrays it contains, so a robot cannot change the array of another fork.
+     */
+    private static Object copyArray(Object array) {
+        int length = Array.getLength(array);
+        Object copy = Array.newInstance(array.getClass().getComponentType(), length);
+        System.arraycopy(array, 0, copy, 0, length);
+        if(!array.getClass().getComponentType().isPrimitive()) {
+            for(int i = 0; i < length; i++) {
+                Object element = Array.get(array, i);
+                if(element != null && element.getClass().isArray())
+                    Array.set(copy, i, copyArray(element));
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * The class, name, random generator, buffers and fields of a robot. The fields declared by the robot class are copied,
+     * and so are the arrays they hold. Other objects they refer to are shared by all forks.
+     */
+    private static class RobotState {
+        private final Class<? extends Robot> robotClass;
+        private final String name;
+        private final MatchRandom random;
+        private final double[][] buffers;
+        private final List<Field> fields = new ArrayList<Field>();
+        private final List<Object> values = new ArrayList<Object>();
+
+        RobotState(Robot robot) {
+            this.robotClass = robot.getClass();
+            this.name = robot.getName();
+            this.random = robot.getRandom().copy();
+            this.buffers = (double[][]) copyArray(robot.getBuffers());
+            for(Class<?> type = this.robotClass; type != Robot.class; type = type.getSuperclass()) {
+                for(Field field : type.getDeclaredFields()) {
+                    if(Modifier.isStatic(field.getModifiers()))
+                        continue;
+                    field.setAccessible(true);
+                    try {
+                        Object value = field.get(robot);
+                        this.fields.add(field);
+                        this.values.add(value != null && value.getClass().isArray() ? copyArray(value) : value);
+                    } catch(IllegalAccessException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+        }
+
+        Robot newRobot() {
+            try {
+                Robot robot = this.robotClass.getDeclaredConstructor().newInstance();
+                robot.setName(this.name);
+                robot.setRandom(this.random.copy());
+                robot.setBuffers((double[][]) copyArray(this.buffers));
+                for(int i = 0; i < this.fields.size(); i++) {
+                    Object value = this.values.get(i);
+                    this.fields.get(i).set(robot, value != null && value.getClass().isArray() ? copyArray(value) : value);
+                }
+                return robot;
+            } catch(NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException(String.format("Failed to fork robot: %s", this.name), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package Arena;
+
+import java.util.Properties;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.With;
+
+/**
+ * The rules of an arena: its size, how far the robots see, how the rockets fly and explode, and how long a battle lasts.
+ * The regular battles are played with the defaults, and a Scenario can change any of them, e.g. to play thousands of robots in a large arena.
+ * A config never changes, and the with methods return a modified copy.
+ */
+@Getter @With @AllArgsConstructor(access = AccessLevel.PRIVATE)
+class ArenaConfig {
+    static final ArenaConfig defaults = new ArenaConfig(500, 500, 500, 25, 10, 10, 250, 1000, 1_000_000, 100, 5000);
+
+    private final int width;
+    private final int height;
+    /**
+     * How far a robot sees the other robots and the rockets when it scans.
+     */
+    private final int scanRange;
+    private final int explosionRadius;
+    private final int explosionDamage;
+    /**
+     * How close a rocket has to pass by a robot to hit it.
+     */
+    private final int impactRadius;
+    private final int maxRocketRange;
+    /**
+     * The time a robot may take to play its turn, only a safety net for robots that block.
+     */
+    private final int turnTimeoutMillis;
+    /**
+     * The number of instructions a robot may execute during its turn.
+     */
+    private final int instructionBudget;
+    private final int initialHealth;
+    private final int maxTurns;
+
+    /**
+     * Reads the rules from the given properties, which are named after the fields, e.g. width=5000 or maxTurns=1000.
+     * The rules that are not given keep the values of this config.
+     * @throws NumberFormatException If a value is not a number.
+     */
+    ArenaConfig withProperties(Properties properties) {
+        return new ArenaConfig(
+                getInt(properties, "width", this.width),
+                getInt(properties, "height", this.height),
+                getInt(properties, "scanRange", this.scanRange),
+                getInt(properties, "explosionRadius", this.explosionRadius),
+                getInt(properties, "explosionDamage", this.explosionDamage),
+                getInt(properties, "impactRadius", this.impactRadius),
+                getInt(properties, "maxRocketRange", this.maxRocketRange),
+                getInt(properties, "turnTimeoutMillis", this.turnTimeoutMillis),
+                getInt(properties, "instructionBudget", this.instructionBudget),
+                getInt(properties, "initialHealth", this.initialHealth),
+                getInt(properties, "maxTurns", this.maxTurns));
+    }
+
+    private static int getInt(Properties properties, String name, int defaultValue) {
+        String value = properties.getProperty(name);
+        return value != null ? Integer.parseInt(value.trim()) : defaultValue;
+    }
+}
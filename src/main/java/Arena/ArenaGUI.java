@@ -1,25 +1,50 @@
 package Arena;
 
 import java.awt.*;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.swing.*;
 
-class ArenaGUI{
+/**
+ * Displays the battle in a window. The events of the battle arrive on the thread that plays it,
+ * while all the Swing components are only touched on the event dispatch thread.
+ * At the end of every turn the state of the arena is captured into a RenderFrame. Independently of the rate at which the turns are played,
+ * a timer on the event dispatch thread draws the latest frame 60 times per second, moving the entities smoothly between turns.
+ * If the battle is played faster than the frames are drawn, or drawing falls behind, the frames in between are skipped.
+ * The frames are recycled: the latest frame is handed over through latestFrame, and the frames that are not drawn anymore
+ * are handed back through spareFrame, so only a few frames are ever allocated.
+ */
+class ArenaGUI implements ArenaListener {
+    private static final int framesPerSecond = 60;
+
     private final JFrame window;
     private final Box scoreboard;
-    private final JPanel arena;
+    private final ArenaCanvas arena;
     private final JTextArea turns;
+    private final Map<Integer, RobotInfo> robotInfos = new HashMap<>();
+    private final AtomicReference<RenderFrame> latestFrame = new AtomicReference<>();
+    private final AtomicReference<RenderFrame> spareFrame = new AtomicReference<>();
+    private final Timer renderTimer;
+    private final int maxTurns;
+    private RenderFrame capturedFrame;
+    private RenderFrame shownFrame;
+    private double shownProgress;
+    private int shownTurn = -1;
 
-    ArenaGUI() {
+    /**
+     * @param maxTurns The number of turns after which the battle ends, shown next to the current turn, or 0 if it is not known.
+     */
+    ArenaGUI(int maxTurns) {
+        this.maxTurns = maxTurns;
         window = new JFrame();
         window.getContentPane().setLayout(new BoxLayout(window.getContentPane(), BoxLayout.X_AXIS));
         window.setSize(780, 560);
         window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
-        arena = new JPanel();
-        arena.setLayout(null);
+        arena = new ArenaCanvas();
         arena.setPreferredSize(new Dimension(530,560));
-        arena.setBackground(Color.WHITE);
-        arena.setBorder(BorderFactory.createLineBorder(Color.BLACK));
         window.add(arena);
 
         scoreboard = Box.createVerticalBox();
@@ -31,29 +56,90 @@ class ArenaGUI{
         scoreboard.add(turns);
         window.add(scoreboard);
 
-        window.setVisible(true);
+        // the timer drops its ticks while the event dispatch thread is busy, instead of queueing them up
+        renderTimer = new Timer(1000 / framesPerSecond, event -> render());
+        renderTimer.setCoalesce(true);
+        SwingUtilities.invokeLater(() -> {
+            window.setVisible(true);
+            renderTimer.start();
+        });
     }
 
-    /**
-     * Adds an element to the GUI that represents a robot.
-     * @return The component that will represent a robot.
-     */
-    JPanel addRobotElement() {
-        JPanel element = new JPanel();
+    @Override
+    public void robotAdded(Robot robot) {
+        int slot = robot.getSlot();
+        String name = robot.getName();
+        SwingUtilities.invokeLater(() -> this.robotInfos.put(slot, addRobotInfoToScoreboard(name)));
+    }
+
+    @Override
+    public void robotRemoved(Robot robot) {
+        int slot = robot.getSlot();
+        SwingUtilities.invokeLater(() -> {
+            RobotInfo info = this.robotInfos.remove(slot);
+            if(info != null)
+                removeRobotInfo(info);
+        });
+    }
+
+    @Override
+    public void turnEnded(int turn, List<Robot> robots, List<Rocket> rockets) {
+        RenderFrame frame = this.spareFrame.getAndSet(null);
+        if(frame == null)
+            frame = new RenderFrame();
+        // after a jump, e.g. in a replay, the entities are not moved from where they were before it
+        frame.capture(turn, robots, rockets, this.capturedFrame != null && this.capturedFrame.turn == turn - 1 ? this.capturedFrame : null);
+        this.capturedFrame = frame;
+        RenderFrame skippedFrame = this.latestFrame.getAndSet(frame);
+        if(skippedFrame != null)
+            this.spareFrame.set(skippedFrame);
+    }
 
-        arena.add(element);
-        element.setSize(20, 20);
-        element.setBackground(Color.GREEN);
+    @Override
+    public void winnerDeclared(Robot winner) {
+        String name = winner.getName();
+        SwingUtilities.invokeLater(() -> declareWinner(name));
+    }
 
-        return element;
+    @Override
+    public void drawDeclared() {
+        SwingUtilities.invokeLater(this::declareDraw);
+    }
+
+    /**
+     * Draws the latest frame on the event dispatch thread. The scoreboard is updated once per frame,
+     * and its texts are only set when they have changed.
+     */
+    private void render() {
+        RenderFrame frame = this.latestFrame.getAndSet(null);
+        if(frame == null) {
+            if(this.shownFrame == null)
+                return;
+            double progress = this.shownFrame.getProgress(System.nanoTime());
+            if(progress != this.shownProgress)
+                this.arena.setFrame(this.shownFrame, progress);
+            this.shownProgress = progress;
+            return;
+        }
+        if(this.shownFrame != null)
+            this.spareFrame.set(this.shownFrame);
+        this.shownFrame = frame;
+        this.shownProgress = frame.getProgress(System.nanoTime());
+        this.arena.setFrame(frame, this.shownProgress);
+        updateTurns(frame.turn);
+        for(int i = 0; i < frame.robotCount; i++) {
+            RobotInfo info = this.robotInfos.get(frame.robotSlot[i]);
+            if(info != null)
+                info.update(frame, i);
+        }
     }
 
     /**
      * Adds an info box to the GUI that will be used to display the information of a robot.
      * @param robotName Name of the robot.
-     * @return The JTextArea which contains the dynamic information that can be changed.
+     * @return The info box, which holds the JTextArea containing the dynamic information that can be changed.
      */
-    JTextArea addRobotInfoToScoreboard(String robotName) {
+    private RobotInfo addRobotInfoToScoreboard(String robotName) {
         JPanel robotInfoArea = new JPanel();
         robotInfoArea.setPreferredSize(new Dimension(200, 100));
         robotInfoArea.setBorder(BorderFactory.createLineBorder(Color.BLACK, 1));
@@ -64,49 +150,36 @@ class ArenaGUI{
         robotInfoArea.add(title);
         robotInfoArea.add(info);
         scoreboard.add(robotInfoArea);
-        return info;
-    }
-
-    /**
-     * Adds a new rocket to the GUI.
-     * @param element Component that represents the rocket.
-     */
-    void addRocketElement(JPanel element) {
-        arena.add(element);
-        element.setSize(5, 5);
-        element.setBackground(Color.RED);
-    }
-
-    /**
-     * Removes the given robot or rocket from the GUI.
-     * @param element The reference JPanel object.
-     */
-    void removeElement(JPanel element) {
-        this.arena.remove(element);
+        scoreboard.revalidate();
+        return new RobotInfo(info);
     }
 
     /**
      * Removes the given info box of the robot from the GUI.
-     * @param info the reference JTextArea object.
+     * @param info The info box of the robot.
      */
-    void removeElement(JTextArea info) {
-        Container infoArea = info.getParent();
-        infoArea.setVisible(false);
-        this.arena.remove(infoArea);
+    private void removeRobotInfo(RobotInfo info) {
+        Container infoArea = info.text.getParent();
+        this.scoreboard.remove(infoArea);
+        this.scoreboard.revalidate();
+        this.scoreboard.repaint();
     }
 
     /**
      * Set the turn number in the scoreboard.
      * @param turn
      */
-    void updateTurns(int turn) {
-        this.turns.setText(String.format("turn: %d / 5000", turn));
+    private void updateTurns(int turn) {
+        if(turn == this.shownTurn)
+            return;
+        this.shownTurn = turn;
+        this.turns.setText(this.maxTurns > 0 ? String.format("turn: %d / %d", turn, this.maxTurns) : String.format("turn: %d", turn));
     }
 
     /**
      * The GUI function that opens a popup window declaring the winner robot of the battle.
      */
-    void declareWinner(String nameOfTheWinner) {
+    private void declareWinner(String nameOfTheWinner) {
         JTextArea winner = new JTextArea(String.format("WINNER: %s", nameOfTheWinner));
         winner.setPreferredSize(new Dimension(200, 100));
         winner.setBorder(BorderFactory.createLineBorder(Color.BLACK, 1));
@@ -121,7 +194,7 @@ class ArenaGUI{
     /**
      * The GUI function that opens a popup window declaring that the battle ended with a draw.
      */
-    void declareDraw() {
+    private void declareDraw() {
         JTextArea winner = new JTextArea("IT'S A DRAW");
         winner.setPreferredSize(new Dimension(200, 100));
         winner.setBorder(BorderFactory.createLineBorder(Color.BLACK, 1));
@@ -132,4 +205,41 @@ class ArenaGUI{
         winnerDialog.setSize(200,100);
         winnerDialog.setVisible(true);
     }
+
+    /**
+     * The info box of a robot in the scoreboard, with the values it currently shows.
+     */
+    private static class RobotInfo {
+        private final JTextArea text;
+        private int x = -1;
+        private int y = -1;
+        private int health = -1;
+        private int speed = -1;
+        private int direction = -1;
+
+        RobotInfo(JTextArea text) {
+            this.text = text;
+        }
+
+        /**
+         * Shows the values of the robot in the given frame, unless they are already shown.
+         * @param frame The frame to be shown.
+         * @param index The index of the robot in the frame.
+         */
+        void update(RenderFrame frame, int index) {
+            int x = (int) frame.robotX[index];
+            int y = (int) frame.robotY[index];
+            int health = frame.robotHealth[index];
+            int speed = frame.robotSpeed[index];
+            int direction = (int) frame.robotDirection[index];
+            if(x == this.x && y == this.y && health == this.health && speed == this.speed && direction == this.direction)
+                return;
+            this.x = x;
+            this.y = y;
+            this.health = health;
+            this.speed = speed;
+            this.direction = direction;
+            this.text.setText(Utils.getRobotInfoDisplayText(x, y, health, speed, direction));
+        }
+    }
 }
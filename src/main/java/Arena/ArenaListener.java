@@ -0,0 +1,60 @@
+package Arena;
+
+import java.util.List;
+
+/**
+ * Receives the events of a battle from the Arena.
+ * The Arena itself has no knowledge of how (or whether) the battle is displayed,
+ * which makes it possible to run the simulation headless and attach renderers only when needed.
+ * All methods are no-ops by default, so implementations only override the events they are interested in.
+ */
+interface ArenaListener {
+    /**
+     * Called when a robot enters the arena.
+     * @param robot The robot that is added.
+     */
+    default void robotAdded(Robot robot) { }
+
+    /**
+     * Called when a robot is killed or kicked out of the arena.
+     * @param robot The robot that is removed.
+     */
+    default void robotRemoved(Robot robot) { }
+
+    /**
+     * Called when a robot fires a rocket.
+     * @param rocket The rocket that is fired.
+     */
+    default void rocketFired(Rocket rocket) { }
+
+    /**
+     * Called when a rocket explodes. The rocket object is reused for a rocket fired later, so it must not be kept after this call.
+     * @param rocket The rocket that exploded.
+     */
+    default void rocketExploded(Rocket rocket) { }
+
+    /**
+     * Called at the beginning of every turn.
+     * @param turn The number of the turn that is starting.
+     */
+    default void turnStarted(int turn) { }
+
+    /**
+     * Called after the arena is updated to reflect the results of the turn.
+     * @param turn The number of the turn that has ended.
+     * @param robots The robots remaining in the arena.
+     * @param rockets The rockets still in the air.
+     */
+    default void turnEnded(int turn, List<Robot> robots, List<Rocket> rockets) { }
+
+    /**
+     * Called when the battle ends with a winner.
+     * @param winner The winner robot.
+     */
+    default void winnerDeclared(Robot winner) { }
+
+    /**
+     * Called when the battle ends with a draw.
+     */
+    default void drawDeclared() { }
+}
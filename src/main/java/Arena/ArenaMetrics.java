@@ -0,0 +1,206 @@
+package Arena;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects the timings of the phases of every turn and the statistics of every robot, across all battles of the process.
+ * All counters are lock-free, so the battles of a tournament can record into them in parallel.
+ * The metrics are exposed through JMX as Arena:type=ArenaMetrics, and written to the log every
+ * robotwars.metrics.logInterval seconds (60 by default, 0 to disable it).
+ */
+class ArenaMetrics implements ArenaMetricsMXBean {
+    /**
+     * The phases of a turn, in the order they are played.
+     */
+    enum Phase { ROBOTS, MOVE, ROCKETS, LISTENERS }
+
+    private static final Logger log = LoggerFactory.getLogger(ArenaMetrics.class);
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private static final ArenaMetrics instance = create();
+
+    private final LongAdder turns = new LongAdder();
+    private final LatencyHistogram[] phases = new LatencyHistogram[Phase.values().length];
+    private final ConcurrentMap<String, RobotMetrics> robots = new ConcurrentHashMap<String, RobotMetrics>();
+
+    private ArenaMetrics() {
+        for(int i = 0; i < this.phases.length; i++)
+            this.phases[i] = new LatencyHistogram();
+    }
+
+    /**
+     * @return The metrics of the process.
+     */
+    static ArenaMetrics get() {
+        return instance;
+    }
+
+    private static ArenaMetrics create() {
+        ArenaMetrics metrics = new ArenaMetrics();
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(metrics, ArenaMetricsMXBean.class, true),
+                    new ObjectName("Arena:type=ArenaMetrics"));
+        } catch (JMException e) {
+            // the metrics are still collected and logged
+            e.printStackTrace();
+        }
+
+        long logInterval = Long.getLong("robotwars.metrics.logInterval", 60);
+        if(logInterval > 0) {
+            ScheduledExecutorService logger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "arena-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            logger.scheduleAtFixedRate(metrics::log, logInterval, logInterval, TimeUnit.SECONDS);
+        }
+        return metrics;
+    }
+
+    /**
+     * Records the duration of a phase of a turn.
+     * @param phase The phase that has ended.
+     * @param start The System.nanoTime at which the phase started.
+     * @return The System.nanoTime at which the phase ended, which is the start of the next phase.
+     */
+    long endPhase(Phase phase, long start) {
+        long end = System.nanoTime();
+        this.phases[phase.ordinal()].record(end - start);
+        return end;
+    }
+
+    void turnPlayed() {
+        this.turns.increment();
+    }
+
+    /**
+     * @param robotName The name of the robot.
+     * @return The metrics of all robots with the given name, which should be looked up once per robot rather than every turn.
+     */
+    RobotMetrics getRobotMetrics(String robotName) {
+        return this.robots.computeIfAbsent(robotName, name -> new RobotMetrics());
+    }
+
+    @Override
+    public long getTurns() {
+        return this.turns.sum();
+    }
+
+    @Override
+    public List<PhaseStatistics> getPhases() {
+        List<PhaseStatistics> statistics = new ArrayList<PhaseStatistics>();
+        for(Phase phase : Phase.values()) {
+            LatencyHistogram histogram = this.phases[phase.ordinal()];
+            statistics.add(new PhaseStatistics(phase.name().toLowerCase(), histogram.getCount(), histogram.getMean() / 1e3,
+                    histogram.getPercentile(0.5) / 1e3, histogram.getPercentile(0.99) / 1e3, histogram.getMax() / 1e3));
+        }
+        return statistics;
+    }
+
+    @Override
+    public List<RobotStatistics> getRobots() {
+        List<RobotStatistics> statistics = new ArrayList<RobotStatistics>();
+        for(Map.Entry<String, RobotMetrics> robot : new TreeMap<String, RobotMetrics>(this.robots).entrySet()) {
+            RobotMetrics metrics = robot.getValue();
+            statistics.add(new RobotStatistics(robot.getKey(), metrics.wallTime.getCount(), metrics.cpuTime.sum() / 1e6,
+                    metrics.wallTime.getTotal() / 1e6, metrics.wallTime.getPercentile(0.99) / 1e3,
+                    metrics.timeouts.sum(), metrics.exceededBudgets.sum(), metrics.scans.sum(), metrics.fires.sum()));
+        }
+        return statistics;
+    }
+
+    @Override
+    public void reset() {
+        this.turns.reset();
+        for(LatencyHistogram phase : this.phases)
+            phase.reset();
+        this.robots.clear();
+    }
+
+    /**
+     * Writes the metrics to the log, unless no turn has been played yet.
+     */
+    private void log() {
+        if(getTurns() == 0)
+            return;
+        StringBuilder sb = new StringBuilder(String.format("%d turns played", getTurns()));
+        for(PhaseStatistics phase : getPhases()) {
+            sb.append(String.format("%n  phase %-10s mean %8.1f us  p50 %8.1f us  p99 %8.1f us  max %10.1f us", phase.getPhase(),
+                    phase.getMeanMicros(), phase.getP50Micros(), phase.getP99Micros(), phase.getMaxMicros()));
+        }
+        for(RobotStatistics robot : getRobots()) {
+            sb.append(String.format("%n  robot %-20s turns %8d  cpu %9.1f ms  wall %9.1f ms  p99 %8.1f us  timeouts %d  budgets exceeded %d  scans %d  fires %d",
+                    robot.getRobot(), robot.getTurns(), robot.getCpuMillis(), robot.getWallMillis(), robot.getP99WallMicros(),
+                    robot.getTimeouts(), robot.getExceededBudgets(), robot.getScans(), robot.getFires()));
+        }
+        log.info(sb.toString());
+    }
+
+    /**
+     * The metrics of the robots with the same name.
+     */
+    static class RobotMetrics {
+        private final LatencyHistogram wallTime = new LatencyHistogram();
+        private final LongAdder cpuTime = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+        private final LongAdder exceededBudgets = new LongAdder();
+        private final LongAdder scans = new LongAdder();
+        private final LongAdder fires = new LongAdder();
+
+        /**
+         * Runs the turn of the robot on the current thread and records its CPU time, wall time, scans and fires.
+         * @param robot The robot whose turn is played.
+         */
+        void run(Robot robot) {
+            long cpuStart = getCpuTime();
+            long wallStart = System.nanoTime();
+            robot.run();
+            turnPlayed(robot, cpuStart, wallStart);
+        }
+
+        /**
+         * Records the turn a robot has played on the current thread, for robots whose turns are not played by run.
+         * @param robot The robot that has played its turn.
+         * @param cpuStart The CPU time of the current thread at the start of the turn, as returned by getCpuTime.
+         * @param wallStart The System.nanoTime at the start of the turn.
+         */
+        void turnPlayed(Robot robot, long cpuStart, long wallStart) {
+            this.wallTime.record(System.nanoTime() - wallStart);
+            if(cpuStart >= 0)
+                this.cpuTime.add(threads.getCurrentThreadCpuTime() - cpuStart);
+            this.scans.add(robot.getScans());
+            this.fires.add(robot.getFires());
+        }
+
+        /**
+         * @return The CPU time of the current thread in nanoseconds, or -1 if it is not measured, e.g. on a virtual thread.
+         */
+        static long getCpuTime() {
+            return Thread.currentThread().isVirtual() ? -1 : threads.getCurrentThreadCpuTime();
+        }
+
+        void timedOut() {
+            this.timeouts.increment();
+        }
+
+        void exceededBudget() {
+            this.exceededBudgets.increment();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package Arena;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The management interface of the ArenaMetrics, registered with the platform MBean server as Arena:type=ArenaMetrics.
+ * The statistics cover all battles played by the process since it started or since the last reset.
+ */
+public interface ArenaMetricsMXBean {
+    /**
+     * @return The number of turns played.
+     */
+    long getTurns();
+
+    /**
+     * @return The durations of the phases of a turn.
+     */
+    List<PhaseStatistics> getPhases();
+
+    /**
+     * @return The statistics of the robots, by the names of the robots.
+     */
+    List<RobotStatistics> getRobots();
+
+    /**
+     * Clears all the statistics.
+     */
+    void reset();
+
+    @Getter
+    @AllArgsConstructor
+    class PhaseStatistics {
+        private final String phase;
+        private final long count;
+        private final double meanMicros;
+        private final double p50Micros;
+        private final double p99Micros;
+        private final double maxMicros;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    class RobotStatistics {
+        private final String robot;
+        private final long turns;
+        private final double cpuMillis;
+        private final double wallMillis;
+        private final double p99WallMicros;
+        private final long timeouts;
+        private final long exceededBudgets;
+        private final long scans;
+        private final long fires;
+    }
+}
@@ -0,0 +1,212 @@
+package Arena;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import Arena.Exceptions.InstructionBudgetExceededError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the robot codes as programs that live for the whole battle, each on its own virtual thread.
+ * The program of a robot is started once, and its calls to scan, move and fire are the points where its turns end:
+ * when the program takes an action it has already taken during the turn, it is suspended until the next turn,
+ * and resumes from the same point with the local state it had. A program that returns ends its turn, and is started again at the next turn,
+ * so robot codes written for the turn by turn mode play the same way in both modes.
+ *
+ * A suspended program only holds its stack on the heap, and the arena hands the turns out without submitting any task,
+ * so thousands of robots can play in the same JVM.
+ * The instruction budget and the turn timeout apply to every turn, as in the turn by turn mode.
+ */
+class ContinuousRobotScheduler implements TurnScheduler {
+    private static final Logger log = LoggerFactory.getLogger(ContinuousRobotScheduler.class);
+
+    private final long turnTimeoutMillis;
+    private final long instructionBudget;
+    private final ThreadFactory threadFactory;
+    private final Map<Robot, Program> programs;
+
+    /**
+     * @param turnTimeoutMillis The time a robot may take to play its turn.
+     * @param instructionBudget The number of instructions a robot may execute during its turn, as metered by the InstructionBudget.
+     */
+    ContinuousRobotScheduler(long turnTimeoutMillis, long instructionBudget) {
+        this.turnTimeoutMillis = turnTimeoutMillis;
+        this.instructionBudget = instructionBudget;
+        this.threadFactory = Thread.ofVirtual().name("robot-", 0).factory();
+        this.programs = new HashMap<Robot, Program>();
+    }
+
+    /**
+     * Starts the program of the given robot, which waits for the first turn.
+     * @param robot The robot to be registered.
+     */
+    @Override
+    public void register(Robot robot) {
+        Program program = new Program(robot, ArenaMetrics.get().getRobotMetrics(robot.getName()));
+        this.programs.put(robot, program);
+        robot.setTurnEnd(program::endTurn);
+        program.thread = this.threadFactory.newThread(program);
+        program.thread.start();
+    }
+
+    /**
+     * Resumes the programs of the given robots, and waits until all of them have ended their turn.
+     * All robots share the same deadline, so the turn takes as long as the slowest robot.
+     * If the thread playing the battle is interrupted, the turn is stopped without blaming any robot, and the interrupt is kept for the arena.
+     * @param robots The robots to be run.
+     * @return The robots that have failed, exceeded their instruction budget or not ended their turn in time.
+     */
+    @Override
+    public List<Robot> runForOneTurn(List<Robot> robots) {
+        CountDownLatch turnEnded = new CountDownLatch(robots.size());
+        for(Robot robot : robots)
+            this.programs.get(robot).startTurn(turnEnded);
+
+        try {
+            turnEnded.await(this.turnTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ArrayList<Robot>();
+        }
+
+        List<Robot> failedRobots = new ArrayList<Robot>();
+        for(Robot robot : robots) {
+            Program program = this.programs.get(robot);
+            if(program.turnEnded && program.failure == null)
+                continue;
+            if(program.failure instanceof InstructionBudgetExceededError) {
+                log.warn("Robot {} has exceeded its instruction budget of {}", robot.getName(), this.instructionBudget);
+                program.metrics.exceededBudget();
+            } else if(program.failure != null) {
+                program.failure.printStackTrace();
+            } else {
+                log.warn("Robot {} has exceeded the turn timeout of {} ms", robot.getName(), this.turnTimeoutMillis);
+                program.metrics.timedOut();
+            }
+            retire(robot);
+            failedRobots.add(robot);
+        }
+        return failedRobots;
+    }
+
+    /**
+     * Stops the program of the given robot. The program is interrupted and its budget is revoked, so it ends at its next metered instruction
+     * or when it reaches its next turn, even if it has swallowed the interrupt, e.g. by catching the InterruptedException of a sleep.
+     * @param robot The robot whose program will be stopped.
+     */
+    @Override
+    public void retire(Robot robot) {
+        Program program = this.programs.remove(robot);
+        if(program == null)
+            return;
+        program.retired = true;
+        program.meter.revoke();
+        // wakes the program up if it waits for its next turn, or lets it pass its next wait, where it sees that it is retired
+        program.turnStarted.release();
+        program.thread.interrupt();
+    }
+
+    @Override
+    public void shutdown() {
+        for(Robot robot : new ArrayList<Robot>(this.programs.keySet()))
+            retire(robot);
+    }
+
+    /**
+     * The program of a robot, running on its virtual thread.
+     * The arena and the program hand the control over to each other through the semaphore and the latch of the turn,
+     * which also makes the changes of each side visible to the other.
+     */
+    private class Program implements Runnable {
+        private final Robot robot;
+        private final ArenaMetrics.RobotMetrics metrics;
+        private final InstructionBudget.Meter meter = new InstructionBudget.Meter();
+        private final Semaphore turnStarted = new Semaphore(0);
+        private Thread thread;
+        private CountDownLatch turnLatch;
+        private volatile boolean turnEnded;
+        private volatile boolean retired;
+        private volatile Throwable failure;
+        private long cpuStart;
+        private long wallStart;
+
+        Program(Robot robot, ArenaMetrics.RobotMetrics metrics) {
+            this.robot = robot;
+            this.metrics = metrics;
+        }
+
+        /**
+         * Resumes the program for a new turn. It is called by the arena.
+         */
+        void startTurn(CountDownLatch turnLatch) {
+            this.turnLatch = turnLatch;
+            this.turnEnded = false;
+            this.turnStarted.release();
+        }
+
+        @Override
+        public void run() {
+            InstructionBudget.meterVirtualThread(this.meter);
+            try {
+                waitForTurn();
+                while(true) {
+                    this.robot.run();
+                    endTurn();
+                }
+            } catch(Throwable e) {
+                if(this.retired)
+                    return;
+                this.failure = e;
+                this.turnLatch.countDown();
+            }
+        }
+
+        /**
+         * Ends the turn of the robot and suspends the program until the next turn. It is called on the thread of the program.
+         */
+        void endTurn() {
+            this.metrics.turnPlayed(this.robot, this.cpuStart, this.wallStart);
+            this.turnEnded = true;
+            this.turnLatch.countDown();
+            waitForTurn();
+        }
+
+        /**
+         * Suspends the program until the arena starts the next turn, and gives the robot its budget for the turn.
+         * @throws RobotRetiredError If the robot has left the arena in the meantime.
+         */
+        private void waitForTurn() {
+            if(!this.retired) {
+                try {
+                    this.turnStarted.acquire();
+                } catch(InterruptedException e) {
+                    this.retired = true;
+                }
+            }
+            if(this.retired) {
+                // a program catching the error is stopped again at the start of its exception handler
+                this.meter.setBudget(-1);
+                throw new RobotRetiredError();
+            }
+            this.meter.setBudget(ContinuousRobotScheduler.this.instructionBudget);
+            this.cpuStart = ArenaMetrics.RobotMetrics.getCpuTime();
+            this.wallStart = System.nanoTime();
+        }
+    }
+
+    /**
+     * Unwinds the program of a robot that has left the arena.
+     */
+    private static class RobotRetiredError extends Error {
+        RobotRetiredError() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package Arena;
+
+import java.util.Arrays;
+
+/**
+ * Holds the live state of all robots and rockets in the arena as flat primitive arrays.
+ * The Robot and Rocket objects are only views on this storage, which allows the arena to move
+ * every entity in a tight loop without allocating any objects.
+ *
+ * Robots are stored by their slot, which they keep for the whole battle.
+ * Rockets are kept densely packed, so an exploded rocket's slot is taken over by the last rocket.
+ * The locations of the entities before their last move are kept as well, so that the path a rocket has flown
+ * during a turn can be checked against the robots, and the GUI can draw the entities moving between turns.
+ *
+ * The storage of a forked arena shares the arrays of its ArenaCheckpoint, copy-on-write: they are only copied
+ * when the fork changes its state for the first time, so forking an arena does not copy the state of the battle.
+ */
+class EntityStore {
+    private final int width;
+    private final int height;
+
+    double[] robotX = new double[0];
+    double[] robotY = new double[0];
+    double[] robotPreviousX = new double[0];
+    double[] robotPreviousY = new double[0];
+    double[] robotVelocityX = new double[0];
+    double[] robotVelocityY = new double[0];
+    double[] robotDirection = new double[0];
+    int[] robotSpeed = new int[0];
+    int[] robotHealth = new int[0];
+    int[] robotRocketsInTheAir = new int[0];
+    /**
+     * The damage the rockets of the robot have dealt to the other robots, and the damage the robot has taken from any rocket, its own included.
+     */
+    int[] robotDamageDealt = new int[0];
+    int[] robotDamageTaken = new int[0];
+    int robotSlots;
+
+    double[] rocketX = new double[0];
+    double[] rocketY = new double[0];
+    double[] rocketPreviousX = new double[0];
+    double[] rocketPreviousY = new double[0];
+    double[] rocketVelocityX = new double[0];
+    double[] rocketVelocityY = new double[0];
+    double[] rocketSpeed = new double[0];
+    double[] rocketRemainingDistance = new double[0];
+    double[] rocketDirection = new double[0];
+    double[] rocketTargetX = new double[0];
+    double[] rocketTargetY = new double[0];
+    int[] rocketSender = new int[0];
+    Rocket[] rockets = new Rocket[0];
+    int rocketCount;
+    /**
+     * Whether the arrays are shared with other storages, and must be copied before they are changed.
+     */
+    private boolean shared;
+
+    EntityStore(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * @return A copy of this storage with arrays of its own. The rockets are not copied, since they are views on this storage.
+     */
+    EntityStore copy() {
+        EntityStore copy = share();
+        copy.ensureWritable();
+        return copy;
+    }
+
+    /**
+     * Creates a storage that shares the arrays of this storage until it changes them.
+     * This storage must not be changed anymore, which is the case for the storage of an ArenaCheckpoint.
+     * @return The shared storage. The rockets are not shared, since they are views on this storage.
+     */
+    EntityStore share() {
+        EntityStore share = new EntityStore(this.width, this.height);
+        share.robotX = this.robotX;
+        share.robotY = this.robotY;
+        share.robotPreviousX = this.robotPreviousX;
+        share.robotPreviousY = this.robotPreviousY;
+        share.robotVelocityX = this.robotVelocityX;
+        share.robotVelocityY = this.robotVelocityY;
+        share.robotDirection = this.robotDirection;
+        share.robotSpeed = this.robotSpeed;
+        share.robotHealth = this.robotHealth;
+        share.robotRocketsInTheAir = this.robotRocketsInTheAir;
+        share.robotDamageDealt = this.robotDamageDealt;
+        share.robotDamageTaken = this.robotDamageTaken;
+        share.robotSlots = this.robotSlots;
+        share.rocketX = this.rocketX;
+        share.rocketY = this.rocketY;
+        share.rocketPreviousX = this.rocketPreviousX;
+        share.rocketPreviousY = this.rocketPreviousY;
+        share.rocketVelocityX = this.rocketVelocityX;
+        share.rocketVelocityY = this.rocketVelocityY;
+        share.rocketSpeed = this.rocketSpeed;
+        share.rocketRemainingDistance = this.rocketRemainingDistance;
+        share.rocketDirection = this.rocketDirection;
+        share.rocketTargetX = this.rocketTargetX;
+        share.rocketTargetY = this.rocketTargetY;
+        share.rocketSender = this.rocketSender;
+        share.rockets = new Rocket[this.rockets.length];
+        share.rocketCount = this.rocketCount;
+        share.shared = true;
+        return share;
+    }
+
+    /**
+     * Copies the arrays if they are shared. It is called before every change of the state,
+     * and must be called by any code that writes to the arrays directly before the storage has been moved.
+     */
+    void ensureWritable() {
+        if(!this.shared)
+            return;
+        this.shared = false;
+        this.robotX = this.robotX.clone();
+        this.robotY = this.robotY.clone();
+        this.robotPreviousX = this.robotPreviousX.clone();
+        this.robotPreviousY = this.robotPreviousY.clone();
+        this.robotVelocityX = this.robotVelocityX.clone();
+        this.robotVelocityY = this.robotVelocityY.clone();
+        this.robotDirection = this.robotDirection.clone();
+        this.robotSpeed = this.robotSpeed.clone();
+        this.robotHealth = this.robotHealth.clone();
+        this.robotRocketsInTheAir = this.robotRocketsInTheAir.clone();
+        this.robotDamageDealt = this.robotDamageDealt.clone();
+        this.robotDamageTaken = this.robotDamageTaken.clone();
+        this.rocketX = this.rocketX.clone();
+        this.rocketY = this.rocketY.clone();
+        this.rocketPreviousX = this.rocketPreviousX.clone();
+        this.rocketPreviousY = this.rocketPreviousY.clone();
+        this.rocketVelocityX = this.rocketVelocityX.clone();
+        this.rocketVelocityY = this.rocketVelocityY.clone();
+        this.rocketSpeed = this.rocketSpeed.clone();
+        this.rocketRemainingDistance = this.rocketRemainingDistance.clone();
+        this.rocketDirection = this.rocketDirection.clone();
+        this.rocketTargetX = this.rocketTargetX.clone();
+        this.rocketTargetY = this.rocketTargetY.clone();
+        this.rocketSender = this.rocketSender.clone();
+    }
+
+    /**
+     * Allocates a slot for a new robot that stands still at the given location with full health.
+     * @return The slot of the robot.
+     */
+    int addRobot(double x, double y, int health) {
+        ensureWritable();
+        if(this.robotSlots == this.robotX.length) {
+            int capacity = Math.max(4, this.robotSlots * 2);
+            this.robotX = Arrays.copyOf(this.robotX, capacity);
+            this.robotY = Arrays.copyOf(this.robotY, capacity);
+            this.robotPreviousX = Arrays.copyOf(this.robotPreviousX, capacity);
+            this.robotPreviousY = Arrays.copyOf(this.robotPreviousY, capacity);
+            this.robotVelocityX = Arrays.copyOf(this.robotVelocityX, capacity);
+            this.robotVelocityY = Arrays.copyOf(this.robotVelocityY, capacity);
+            this.robotDirection = Arrays.copyOf(this.robotDirection, capacity);
+            this.robotSpeed = Arrays.copyOf(this.robotSpeed, capacity);
+            this.robotHealth = Arrays.copyOf(this.robotHealth, capacity);
+            this.robotRocketsInTheAir = Arrays.copyOf(this.robotRocketsInTheAir, capacity);
+            this.robotDamageDealt = Arrays.copyOf(this.robotDamageDealt, capacity);
+            this.robotDamageTaken = Arrays.copyOf(this.robotDamageTaken, capacity);
+        }
+        int slot = this.robotSlots++;
+        this.robotX[slot] = x;
+        this.robotY[slot] = y;
+        this.robotPreviousX[slot] = x;
+        this.robotPreviousY[slot] = y;
+        this.robotHealth[slot] = health;
+        return slot;
+    }
+
+    /**
+     * Sets the direction and the speed of the robot, computing its velocity vector once instead of every turn.
+     */
+    void setRobotMotion(int slot, double direction, int speed) {
+        ensureWritable();
+        this.robotDirection[slot] = direction;
+        this.robotSpeed[slot] = speed;
+        this.robotVelocityX[slot] = Math.cos(Math.toRadians(direction)) * speed;
+        this.robotVelocityY[slot] = Math.sin(Math.toRadians(direction)) * speed;
+    }
+
+    /**
+     * Stops the robot, so that a robot which has left the arena is not moved anymore.
+     */
+    void stopRobot(int slot) {
+        ensureWritable();
+        this.robotVelocityX[slot] = 0;
+        this.robotVelocityY[slot] = 0;
+    }
+
+    /**
+     * Adds a rocket that flies from the sender's location towards the target.
+     * The rocket stops at the target, after flying the maximum range, or at the border of the arena, whichever comes first.
+     * @param maxRange The longest distance the rocket may fly.
+     * @return The slot of the rocket, which is only valid until a rocket is removed.
+     */
+    int addRocket(Rocket rocket, int sender, double targetX, double targetY, int speed, double maxRange) {
+        ensureWritable();
+        if(this.rocketCount == this.rocketX.length) {
+            int capacity = Math.max(8, this.rocketCount * 2);
+            this.rocketX = Arrays.copyOf(this.rocketX, capacity);
+            this.rocketY = Arrays.copyOf(this.rocketY, capacity);
+            this.rocketPreviousX = Arrays.copyOf(this.rocketPreviousX, capacity);
+            this.rocketPreviousY = Arrays.copyOf(this.rocketPreviousY, capacity);
+            this.rocketVelocityX = Arrays.copyOf(this.rocketVelocityX, capacity);
+            this.rocketVelocityY = Arrays.copyOf(this.rocketVelocityY, capacity);
+            this.rocketSpeed = Arrays.copyOf(this.rocketSpeed, capacity);
+            this.rocketRemainingDistance = Arrays.copyOf(this.rocketRemainingDistance, capacity);
+            this.rocketDirection = Arrays.copyOf(this.rocketDirection, capacity);
+            this.rocketTargetX = Arrays.copyOf(this.rocketTargetX, capacity);
+            this.rocketTargetY = Arrays.copyOf(this.rocketTargetY, capacity);
+            this.rocketSender = Arrays.copyOf(this.rocketSender, capacity);
+            this.rockets = Arrays.copyOf(this.rockets, capacity);
+        }
+        double x = this.robotX[sender];
+        double y = this.robotY[sender];
+        double direction = Math.toDegrees(Math.atan2(targetY - y, targetX - x));
+        double directionX = Math.cos(Math.toRadians(direction));
+        double directionY = Math.sin(Math.toRadians(direction));
+        double distance = Math.min(Utils.getDistanceBetween(x, y, targetX, targetY), maxRange);
+        // the distance to the border along the direction of the rocket, so a target outside of the arena is not flown to forever
+        if(directionX > 0)
+            distance = Math.min(distance, (this.width - x) / directionX);
+        else if(directionX < 0)
+            distance = Math.min(distance, -x / directionX);
+        if(directionY > 0)
+            distance = Math.min(distance, (this.height - y) / directionY);
+        else if(directionY < 0)
+            distance = Math.min(distance, -y / directionY);
+
+        int slot = this.rocketCount++;
+        this.rocketX[slot] = x;
+        this.rocketY[slot] = y;
+        this.rocketPreviousX[slot] = x;
+        this.rocketPreviousY[slot] = y;
+        this.rocketVelocityX[slot] = directionX * speed;
+        this.rocketVelocityY[slot] = directionY * speed;
+        this.rocketSpeed[slot] = speed;
+        this.rocketRemainingDistance[slot] = Math.max(distance, 0);
+        this.rocketDirection[slot] = direction;
+        this.rocketTargetX[slot] = targetX;
+        this.rocketTargetY[slot] = targetY;
+        this.rocketSender[slot] = sender;
+        this.rockets[slot] = rocket;
+        this.robotRocketsInTheAir[sender]++;
+        rocket.setSlot(slot);
+        return slot;
+    }
+
+    /**
+     * Removes the rocket by moving the last rocket into its slot.
+     */
+    void removeRocket(int slot) {
+        ensureWritable();
+        this.robotRocketsInTheAir[this.rocketSender[slot]]--;
+        int last = --this.rocketCount;
+        if(slot != last) {
+            this.rocketX[slot] = this.rocketX[last];
+            this.rocketY[slot] = this.rocketY[last];
+            this.rocketPreviousX[slot] = this.rocketPreviousX[last];
+            this.rocketPreviousY[slot] = this.rocketPreviousY[last];
+            this.rocketVelocityX[slot] = this.rocketVelocityX[last];
+            this.rocketVelocityY[slot] = this.rocketVelocityY[last];
+            this.rocketSpeed[slot] = this.rocketSpeed[last];
+            this.rocketRemainingDistance[slot] = this.rocketRemainingDistance[last];
+            this.rocketDirection[slot] = this.rocketDirection[last];
+            this.rocketTargetX[slot] = this.rocketTargetX[last];
+            this.rocketTargetY[slot] = this.rocketTargetY[last];
+            this.rocketSender[slot] = this.rocketSender[last];
+            this.rockets[slot] = this.rockets[last];
+            this.rockets[slot].setSlot(slot);
+        }
+        this.rockets[last] = null;
+    }
+
+    /**
+     * Moves every robot by its velocity, keeping them inside the arena,
+     * and every rocket by its velocity, up to the point where its flight ends.
+     */
+    void move() {
+        ensureWritable();
+        System.arraycopy(this.robotX, 0, this.robotPreviousX, 0, this.robotSlots);
+        System.arraycopy(this.robotY, 0, this.robotPreviousY, 0, this.robotSlots);
+        for(int i = 0; i < this.robotSlots; i++) {
+            this.robotX[i] = Math.max(Math.min(this.robotX[i] + this.robotVelocityX[i], this.width), 0);
+            this.robotY[i] = Math.max(Math.min(this.robotY[i] + this.robotVelocityY[i], this.height), 0);
+        }
+        System.arraycopy(this.rocketX, 0, this.rocketPreviousX, 0, this.rocketCount);
+        System.arraycopy(this.rocketY, 0, this.rocketPreviousY, 0, this.rocketCount);
+        for(int i = 0; i < this.rocketCount; i++) {
+            if(this.rocketRemainingDistance[i] < this.rocketSpeed[i]) {
+                double fraction = this.rocketRemainingDistance[i] / this.rocketSpeed[i];
+                this.rocketX[i] += this.rocketVelocityX[i] * fraction;
+                this.rocketY[i] += this.rocketVelocityY[i] * fraction;
+                this.rocketRemainingDistance[i] = 0;
+            } else {
+                this.rocketX[i] += this.rocketVelocityX[i];
+                this.rocketY[i] += this.rocketVelocityY[i];
+                this.rocketRemainingDistance[i] -= this.rocketSpeed[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package Arena.Exceptions;
+
+/**
+ * Thrown inside a robot's code when it has used up its instruction budget for the turn.
+ * It is an Error rather than an Exception, so that a robot catching exceptions does not swallow it by accident.
+ */
+public class InstructionBudgetExceededError extends Error {
+    public InstructionBudgetExceededError(String message) {
+        super(message);
+    }
+}
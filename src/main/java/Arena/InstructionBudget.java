@@ -0,0 +1,98 @@
+package Arena;
+
+import Arena.Exceptions.InstructionBudgetExceededError;
+
+/**
+ * Meters the instructions executed by the robots. The RobotInstrumenter inserts calls to this class into the bytecode of the robots,
+ * and every robot runs with a Meter holding the number of instructions the robot may still execute during the current turn.
+ * Since the count only depends on the code of the robot, a robot uses up its budget at exactly the same point of its code
+ * on every machine, however loaded the machine is.
+ *
+ * A robot playing turn by turn runs on a MeteredThread, which holds its meter in a field.
+ * A robot running continuously runs on a virtual thread, which cannot be subclassed, so its meter is kept in a thread local instead.
+ */
+public final class InstructionBudget {
+    private static final ThreadLocal<Meter> virtualThreadMeters = new ThreadLocal<Meter>();
+
+    private InstructionBudget() { }
+
+    /**
+     * Charges the given number of instructions to the robot running on the current thread.
+     * Code running on any other thread, e.g. a robot run directly by a test, is not metered.
+     * @param instructions The number of instructions executed since the previous charge.
+     * @throws InstructionBudgetExceededError If the robot has used up its budget for the turn, or its budget has been revoked.
+     */
+    public static void charge(int instructions) {
+        Thread thread = Thread.currentThread();
+        Meter meter;
+        if(thread instanceof MeteredThread)
+            meter = ((MeteredThread) thread).meter;
+        else if(thread.isVirtual())
+            meter = virtualThreadMeters.get();
+        else
+            return;
+        if(meter == null)
+            return;
+        meter.remainingInstructions -= instructions;
+        if(meter.remainingInstructions < 0)
+            throw new InstructionBudgetExceededError(String.format("%s has exceeded its instruction budget", thread.getName()));
+        if(meter.revoked)
+            throw new InstructionBudgetExceededError(String.format("%s has had its instruction budget revoked", thread.getName()));
+    }
+
+    /**
+     * Throws the error again if the budget is used up. It is called at the start of every exception handler of the robots,
+     * so that a robot catching all errors cannot keep running after its budget is used up.
+     */
+    public static void check() {
+        charge(0);
+    }
+
+    /**
+     * Meters the robot running on the current virtual thread with the given meter.
+     */
+    static void meterVirtualThread(Meter meter) {
+        virtualThreadMeters.set(meter);
+    }
+
+    /**
+     * The number of instructions a robot may still execute during the current turn.
+     * The count is only written by the thread of the robot. Another thread stops the robot by revoking its budget instead.
+     */
+    static class Meter {
+        private long remainingInstructions;
+        private volatile boolean revoked;
+
+        /**
+         * Gives the robot a new budget, at the beginning of every turn.
+         */
+        void setBudget(long instructions) {
+            this.remainingInstructions = instructions;
+        }
+
+        /**
+         * Takes the budget away for good, from any thread. The robot is stopped at its next metered instruction.
+         */
+        void revoke() {
+            this.revoked = true;
+        }
+    }
+
+    /**
+     * A thread that runs the code of a robot with a budget of instructions.
+     */
+    static class MeteredThread extends Thread {
+        private final Meter meter = new Meter();
+
+        MeteredThread(Runnable runnable, String name) {
+            super(runnable, name);
+        }
+
+        /**
+         * Gives the thread a new budget, at the beginning of every turn.
+         */
+        void setBudget(long instructions) {
+            this.meter.setBudget(instructions);
+        }
+    }
+}
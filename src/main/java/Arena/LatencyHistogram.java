@@ -0,0 +1,65 @@
+package Arena;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations in nanoseconds, with one bucket per power of two.
+ * Recording a duration costs a few atomic increments, so it can be done every turn by many threads at once.
+ * The percentiles are only as precise as the buckets, i.e. they are at most twice the actual value.
+ */
+class LatencyHistogram {
+    private final AtomicLongArray buckets = new AtomicLongArray(64);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+    void record(long nanos) {
+        nanos = Math.max(nanos, 0);
+        this.buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(nanos));
+        this.count.increment();
+        this.total.add(nanos);
+        this.max.accumulate(nanos);
+    }
+
+    long getCount() {
+        return this.count.sum();
+    }
+
+    long getTotal() {
+        return this.total.sum();
+    }
+
+    long getMax() {
+        return this.max.get();
+    }
+
+    long getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : getTotal() / count;
+    }
+
+    /**
+     * @param quantile The quantile, between 0 and 1, e.g. 0.99 for the 99th percentile.
+     * @return The upper bound of the bucket the quantile falls in, but no more than the maximum.
+     */
+    long getPercentile(double quantile) {
+        long rank = (long) Math.ceil(quantile * getCount());
+        long seen = 0;
+        for(int bucket = 0; bucket < this.buckets.length(); bucket++) {
+            seen += this.buckets.get(bucket);
+            if(seen >= rank && seen > 0)
+                return Math.min(bucket == 0 ? 0 : (1L << bucket) - 1, getMax());
+        }
+        return getMax();
+    }
+
+    void reset() {
+        for(int bucket = 0; bucket < this.buckets.length(); bucket++)
+            this.buckets.set(bucket, 0);
+        this.count.reset();
+        this.total.reset();
+        this.max.reset();
+    }
+}
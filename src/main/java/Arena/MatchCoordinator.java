@@ -0,0 +1,240 @@
+package Arena;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Plays the battles of a tournament on MatchWorker processes, which may run on other machines, instead of in this process.
+ * The coordinator listens on a port, and every worker that connects receives the robot files of the tournament once,
+ * compiles them and is then sent battles as long as there are battles left. A worker is sent as many battles at a time
+ * as it can play in parallel, and a new one whenever it sends back a result.
+ *
+ * The battles a worker was playing when its connection is lost, e.g. because its process was killed, are queued again
+ * and played by the remaining workers or by the next one that connects. A battle whose workers keep failing is given up after maxAttempts.
+ * The seeds of the battles are derived by the tournament, so a distributed tournament has the same results as a local one.
+ */
+class MatchCoordinator {
+    private static final Logger log = LoggerFactory.getLogger(MatchCoordinator.class);
+    private static final int maxAttempts = 3;
+
+    private final Tournament tournament;
+    private final int port;
+    private final LinkedBlockingDeque<MatchSpec> pendingMatches = new LinkedBlockingDeque<MatchSpec>();
+    private MatchResult[] results;
+    private CountDownLatch remainingMatches;
+    private volatile String failure;
+
+    /**
+     * @param tournament The tournament whose battles are played.
+     * @param port The port the workers connect to.
+     */
+    MatchCoordinator(Tournament tournament, int port) {
+        this.tournament = tournament;
+        this.port = port;
+    }
+
+    /**
+     * Plays all the battles of the tournament on the workers that connect, and waits until all of them have been played.
+     * The battles played before are taken from the result cache of the tournament, and the new results are stored in it.
+     * @return The results of the battles, in the same order as the pairings.
+     * @throws IOException If the port cannot be listened on, or a battle could not be played by any worker.
+     */
+    List<MatchResult> play(List<int[]> pairings) throws IOException, InterruptedException {
+        this.results = new MatchResult[pairings.size()];
+        for(int m = 0; m < pairings.size(); m++) {
+            int[] pairing = pairings.get(m);
+            long seed = this.tournament.getSeed(this.tournament.getRound(m, pairings.size()), pairing);
+            String key = this.tournament.getCacheKey(seed, pairing);
+            this.results[m] = this.tournament.getCachedResult(key);
+            if(this.results[m] == null)
+                this.pendingMatches.add(new MatchSpec(m, seed, pairing, key));
+        }
+        this.remainingMatches = new CountDownLatch(this.pendingMatches.size());
+
+        if(this.remainingMatches.getCount() > 0) {
+            try(ServerSocket server = new ServerSocket(this.port)) {
+                log.info("Waiting for workers on port {} to play {} battles", server.getLocalPort(), this.remainingMatches.getCount());
+                Thread acceptor = new Thread(() -> acceptWorkers(server), "match-coordinator");
+                acceptor.setDaemon(true);
+                acceptor.start();
+                while(!this.remainingMatches.await(1, TimeUnit.SECONDS)) {
+                    if(this.failure != null)
+                        throw new IOException(this.failure);
+                }
+            }
+        }
+
+        List<MatchResult> results = new ArrayList<MatchResult>();
+        for(MatchResult result : this.results)
+            results.add(result);
+        return results;
+    }
+
+    /**
+     * Accepts the connections of the workers until the server socket is closed, and serves every worker on its own thread.
+     */
+    private void acceptWorkers(ServerSocket server) {
+        while(!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                Thread thread = new Thread(() -> serveWorker(socket), String.format("match-worker-%s", socket.getRemoteSocketAddress()));
+                thread.setDaemon(true);
+                thread.start();
+            } catch(IOException e) {
+                if(!server.isClosed())
+                    e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Sends the robots to a worker, then keeps it busy with battles until all of them have been played.
+     * If the connection fails, the battles the worker was playing are queued again.
+     */
+    private void serveWorker(Socket socket) {
+        String worker = socket.getRemoteSocketAddress().toString();
+        Map<Integer, MatchSpec> matchesInProgress = new HashMap<Integer, MatchSpec>();
+        try(Socket connection = socket) {
+            connection.setKeepAlive(true);
+            connection.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+
+            MatchProtocol.expect(in, MatchProtocol.hello);
+            if(in.readInt() != MatchProtocol.magic || in.readInt() != MatchProtocol.version)
+                throw new IOException("The worker speaks another version of the protocol");
+            int parallelism = Math.max(1, in.readInt());
+            sendRobots(out);
+            String rules = readReady(in);
+            String expectedRules = this.tournament.newArena(0).getRules();
+            if(!rules.equals(expectedRules)) {
+                log.error("Worker {} plays with the rules {} instead of {}, and is not used", new Object[]{worker, rules, expectedRules});
+                out.writeByte(MatchProtocol.bye);
+                out.flush();
+                return;
+            }
+            log.info("Worker {} is ready to play {} battles at a time", worker, parallelism);
+
+            while(this.remainingMatches.getCount() > 0) {
+                while(matchesInProgress.size() < parallelism) {
+                    MatchSpec spec = this.pendingMatches.poll();
+                    if(spec == null)
+                        break;
+                    matchesInProgress.put(spec.match, spec);
+                    sendMatch(out, spec);
+                }
+                out.flush();
+                if(matchesInProgress.isEmpty()) {
+                    // every battle left is played by another worker, which may still fail
+                    MatchSpec spec = this.pendingMatches.poll(1, TimeUnit.SECONDS);
+                    if(spec != null)
+                        this.pendingMatches.addFirst(spec);
+                    continue;
+                }
+
+                MatchProtocol.expect(in, MatchProtocol.result);
+                MatchSpec spec = matchesInProgress.remove(in.readInt());
+                MatchResult result = MatchProtocol.readResult(in);
+                if(spec == null)
+                    throw new IOException("The worker has sent the result of a battle it was not playing");
+                this.results[spec.match] = result;
+                this.tournament.cacheResult(spec.key, result);
+                this.tournament.storeResult(spec.seed, spec.pairing, result);
+                this.remainingMatches.countDown();
+            }
+            out.writeByte(MatchProtocol.bye);
+            out.flush();
+        } catch(IOException e) {
+            log.warn("Lost the connection to worker {}, {} battles are queued again: {}",
+                    new Object[]{worker, matchesInProgress.size(), e.toString()});
+            for(MatchSpec spec : matchesInProgress.values())
+                requeue(spec);
+        } catch(InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void sendRobots(DataOutputStream out) throws IOException {
+        Arena arena = this.tournament.newArena(0);
+        out.writeByte(MatchProtocol.robots);
+        out.writeInt(arena.getWidth());
+        out.writeInt(arena.getHeight());
+        MatchProtocol.writeString(out, arena.getExecutionMode().name());
+        List<String> robotFilePaths = this.tournament.getRobotFilePaths();
+        out.writeInt(robotFilePaths.size());
+        for(String robotFilePath : robotFilePaths) {
+            MatchProtocol.writeString(out, Paths.get(robotFilePath).getFileName().toString());
+            MatchProtocol.writeString(out, new String(Files.readAllBytes(Paths.get(robotFilePath)), StandardCharsets.UTF_8));
+        }
+        out.flush();
+    }
+
+    /**
+     * @return The rules of the arenas of the worker.
+     * @throws IOException If the worker could not load the robots.
+     */
+    private String readReady(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        if(type == MatchProtocol.failed)
+            throw new IOException(String.format("The worker could not load the robots: %s", MatchProtocol.readString(in)));
+        if(type != MatchProtocol.ready)
+            throw new IOException(String.format("Expected message %d but received %d", MatchProtocol.ready, type));
+        return MatchProtocol.readString(in);
+    }
+
+    private void sendMatch(DataOutputStream out, MatchSpec spec) throws IOException {
+        out.writeByte(MatchProtocol.match);
+        out.writeInt(spec.match);
+        out.writeLong(spec.seed);
+        out.writeInt(spec.pairing.length);
+        for(int robot : spec.pairing)
+            out.writeInt(robot);
+    }
+
+    /**
+     * Queues a battle again at the front of the queue, unless it has already been attempted maxAttempts times.
+     */
+    private void requeue(MatchSpec spec) {
+        if(++spec.attempts >= maxAttempts) {
+            this.failure = String.format("Battle %d has failed on %d workers", spec.match, spec.attempts);
+            return;
+        }
+        this.pendingMatches.addFirst(spec);
+    }
+
+    /**
+     * A battle to be played by a worker.
+     */
+    private static class MatchSpec {
+        private final int match;
+        private final long seed;
+        private final int[] pairing;
+        private final String key;
+        private int attempts;
+
+        MatchSpec(int match, long seed, int[] pairing, String key) {
+            this.match = match;
+            this.seed = seed;
+            this.pairing = pairing;
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package Arena;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The messages exchanged over a socket between the MatchCoordinator of a distributed tournament and its MatchWorkers.
+ *
+ * A worker connects to the coordinator and says hello with the magic number, the protocol version and the number of battles
+ * it plays at the same time. The coordinator answers with the robots of the tournament, once per worker: the names and contents
+ * of the robot files, and the size and execution mode of the arenas. The worker compiles the robots, and answers with the rules
+ * of its arenas, which the coordinator checks against its own, or with the reason it failed.
+ * The coordinator then sends the battles one by one, each with its index, seed and the indexes of its robots,
+ * and the worker sends back their results as they finish, in any order: the winner, the number of turns,
+ * and the damage dealt and taken by every robot. The coordinator says goodbye when all the battles have been played.
+ *
+ * Every message starts with its type. Strings are written as UTF-8 bytes prefixed by their length, so robot files can be of any size.
+ */
+final class MatchProtocol {
+    static final int magic = 0x52574d50;
+    static final int version = 2;
+
+    static final byte hello = 1;
+    static final byte robots = 2;
+    static final byte ready = 3;
+    static final byte failed = 4;
+    static final byte match = 5;
+    static final byte result = 6;
+    static final byte bye = 7;
+
+    private MatchProtocol() { }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the result of a battle, without the type and the index of the battle.
+     */
+    static void writeResult(DataOutputStream out, MatchResult result) throws IOException {
+        out.writeInt(result.getWinner());
+        out.writeInt(result.getTurns());
+        out.writeInt(result.getDamageDealt().length);
+        for(int robot = 0; robot < result.getDamageDealt().length; robot++) {
+            out.writeInt(result.getDamageDealt()[robot]);
+            out.writeInt(result.getDamageTaken()[robot]);
+        }
+    }
+
+    static MatchResult readResult(DataInputStream in) throws IOException {
+        int winner = in.readInt();
+        int turns = in.readInt();
+        int[] damageDealt = new int[in.readInt()];
+        int[] damageTaken = new int[damageDealt.length];
+        for(int robot = 0; robot < damageDealt.length; robot++) {
+            damageDealt[robot] = in.readInt();
+            damageTaken[robot] = in.readInt();
+        }
+        return new MatchResult(winner, turns, damageDealt, damageTaken);
+    }
+
+    /**
+     * Reads the type of the next message, and checks that it is the expected one.
+     * @throws IOException If the message is of another type.
+     */
+    static void expect(DataInputStream in, byte type) throws IOException {
+        byte actual = in.readByte();
+        if(actual != type)
+            throw new IOException(String.format("Expected message %d but received %d", type, actual));
+    }
+}
@@ -0,0 +1,61 @@
+package Arena;
+
+/**
+ * The source of randomness of a battle. Every battle gets its own generator created from the seed of the battle,
+ * and every robot gets its own generator split from it, so the numbers a robot draws do not depend on
+ * how the robot threads are scheduled, and a battle played with the same seed plays out the same way.
+ *
+ * It is a SplitMix64 generator, whose whole state is a single long, so it is cheap to create and to copy.
+ * It is not thread-safe, each generator must only be used by one thread at a time.
+ */
+class MatchRandom {
+    private static final long gamma = 0x9E3779B97F4A7C15L;
+
+    private long state;
+
+    MatchRandom(long seed) {
+        this.state = seed;
+    }
+
+    /**
+     * @return A new generator with the same state, which yields the same numbers as this one from now on.
+     */
+    MatchRandom copy() {
+        return new MatchRandom(this.state);
+    }
+
+    /**
+     * @return A new generator seeded from this one, yielding numbers independent of it.
+     */
+    MatchRandom split() {
+        return new MatchRandom(mix(nextLong()));
+    }
+
+    long nextLong() {
+        this.state += gamma;
+        return mix(this.state);
+    }
+
+    /**
+     * @return A random number between 0 (inclusive) and 1 (exclusive).
+     */
+    double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * @return A random number between 0 (inclusive) and the bound (exclusive).
+     */
+    int nextInt(int bound) {
+        return (int) (nextDouble() * bound);
+    }
+
+    /**
+     * Scrambles the bits of the value, so that similar seeds lead to unrelated numbers.
+     */
+    static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
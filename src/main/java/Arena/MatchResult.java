@@ -0,0 +1,36 @@
+package Arena;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The outcome of a battle.
+ */
+@Getter @AllArgsConstructor
+class MatchResult {
+    /**
+     * The index of the winner robot in the order the robots have entered the arena, or -1 if the battle is a draw.
+     */
+    private final int winner;
+    private final int turns;
+    /**
+     * The damage dealt to the other robots and the damage taken by every robot, in the order the robots have entered the arena,
+     * or null if they are not known, e.g. for a result read from the MatchResultCache.
+     */
+    private final int[] damageDealt;
+    private final int[] damageTaken;
+
+    /**
+     * Creates a result without the damage of the robots.
+     */
+    MatchResult(int winner, int turns) {
+        this(winner, turns, null, null);
+    }
+
+    /**
+     * @return true if the battle ended with a draw, false otherwise.
+     */
+    boolean isDraw() {
+        return winner < 0;
+    }
+}
@@ -0,0 +1,95 @@
+package Arena;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the results of the battles that have been played, so a battle that is played again
+ * with the same robots, seed and rules can be skipped. Since battles are deterministic for a given seed,
+ * the stored result is the result the battle would have again, unless a robot blocked until the turn timeout.
+ *
+ * The results are kept in a text file with one line per battle, which is appended to as battles finish,
+ * so it can be shared by consecutive runs. Lines that cannot be parsed, e.g. a line cut off by a crash, are ignored.
+ */
+class MatchResultCache {
+    private final Path file;
+    private final Map<String, MatchResult> results = new ConcurrentHashMap<String, MatchResult>();
+
+    /**
+     * @param file The file the results are stored in. It is created when the first result is stored.
+     */
+    MatchResultCache(Path file) {
+        this.file = file;
+        if(!Files.exists(file))
+            return;
+        try {
+            for(String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                String[] fields = line.split(" ");
+                if(fields.length != 3)
+                    continue;
+                try {
+                    this.results.put(fields[0], new MatchResult(Integer.parseInt(fields[1]), Integer.parseInt(fields[2])));
+                } catch (NumberFormatException e) {
+                    // a partially written line
+                }
+            }
+        } catch (IOException e) {
+            // the cache is only an optimization, the battles are simply played again
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Computes the key of a battle.
+     * @param robotHashes The hashes of the bytecode of the robots, in the order they enter the arena.
+     * @param seed The seed of the battle.
+     * @param rules The rules of the arena, as described by Arena.getRules.
+     * @return The key of the battle as a hexadecimal string.
+     */
+    static String keyOf(List<String> robotHashes, long seed, String rules) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.format("%s:%d:%s", String.join(",", robotHashes), seed, rules).getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for(byte b : digest.digest())
+                sb.append(String.format("%02x", b));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param key The key of the battle.
+     * @return The result of the battle, or null if it has not been played before.
+     */
+    MatchResult get(String key) {
+        return this.results.get(key);
+    }
+
+    /**
+     * Stores the result of a battle and appends it to the file.
+     * @param key The key of the battle.
+     * @param result The result of the battle.
+     */
+    synchronized void put(String key, MatchResult result) {
+        if(this.results.putIfAbsent(key, result) != null)
+            return;
+        String line = String.format("%s %d %d%n", key, result.getWinner(), result.getTurns());
+        try {
+            if(this.file.getParent() != null)
+                Files.createDirectories(this.file.getParent());
+            Files.write(this.file, line.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,727 @@
+package Arena;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import lombok.Getter;
+
+/**
+ * Keeps the outcomes of all the battles ever played, for win rates and leaderboards across tournaments.
+ *
+ * The battles are appended to a log of fixed-size binary records, which is mapped into memory in regions of regionSize bytes,
+ * so appending a battle only writes to memory, and the log can grow to millions of battles. Every record holds when the battle was
+ * played, its seed, its number of turns, its winner, and the robots with the damage they have dealt and taken, and ends with a
+ * checksum of its content. The robots are stored by their ids, whose names are kept one per line in a file next to the log.
+ *
+ * The statistics of every robot and every pairing of two robots are kept in memory and updated as battles are appended,
+ * so the queries never read the log. They are saved to an index file every snapshotInterval battles and when the store is closed,
+ * together with the number of battles they cover. When the store is opened, the index is loaded and only the battles appended
+ * after it are read from the log.
+ *
+ * After a crash, the log is read up to the first record whose checksum does not match, e.g. a record cut off by the crash,
+ * and everything after it is discarded. If the index does not match the log, it is rebuilt from the whole log.
+ * A store is written by a single process at a time, which holds a lock on the log, but can be read by any number of processes.
+ */
+class MatchResultStore implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(MatchResultStore.class);
+
+    private static final int magic = 0x52574d52;
+    private static final int version = 1;
+    private static final int indexMagic = 0x52574d49;
+    /**
+     * The most robots a record can hold. Battles with more robots are not stored.
+     */
+    static final int maxRobots = 8;
+    private static final int recordSize = 128;
+    /**
+     * The header takes the place of a record, so records never cross the border of a region.
+     */
+    private static final int headerSize = recordSize;
+    /**
+     * 16 MB, i.e. 131072 records.
+     */
+    private static final int regionSize = 1 << 24;
+    private static final int snapshotInterval = 1 << 16;
+
+    private static final int playedAtOffset = 0;
+    private static final int seedOffset = 8;
+    private static final int turnsOffset = 16;
+    private static final int robotCountOffset = 20;
+    private static final int winnerOffset = 21;
+    private static final int robotsOffset = 24;
+    private static final int robotEntrySize = 12;
+    private static final int checksumOffset = recordSize - 4;
+
+    private final Path file;
+    private final Path robotsFile;
+    private final Path indexFile;
+    private final boolean readOnly;
+    private final FileChannel channel;
+    private final FileChannel robotsChannel;
+    private final FileLock lock;
+    private final List<MappedByteBuffer> regions = new ArrayList<MappedByteBuffer>();
+    private final CRC32C checksum = new CRC32C();
+
+    private final List<String> robotNames = new ArrayList<String>();
+    private final Map<String, Integer> robotIds = new HashMap<String, Integer>();
+    private final List<RobotStats> robotStats = new ArrayList<RobotStats>();
+    /**
+     * The statistics of the pairings, by the ids of the two robots, the smaller one in the upper half.
+     */
+    private final Map<Long, PairingStats> pairingStats = new HashMap<Long, PairingStats>();
+    private @Getter long recordCount;
+    private int lastChecksum;
+    private long snapshotRecordCount;
+    private boolean warnedTooManyRobots;
+
+    /**
+     * Opens the store for writing, creating it if needed, and recovers it from a crash if needed.
+     * @param file The log of the store. The robot names and the index are kept next to it, in files with the same name and
+     * the extensions .robots and .index.
+     * @throws IOException If the log is not a log of results, or another process writes to it.
+     */
+    MatchResultStore(Path file) throws IOException {
+        this(file, false);
+    }
+
+    /**
+     * @param file The log of the store.
+     * @param readOnly Whether the store is only read, e.g. to query the results while a tournament is writing to it.
+     * A store that is read does not see the battles appended after it has been opened.
+     * @throws IOException If the log is not a log of results, cannot be read, or is written by another process.
+     */
+    MatchResultStore(Path file, boolean readOnly) throws IOException {
+        this.file = file;
+        this.robotsFile = Paths.get(String.format("%s.robots", file));
+        this.indexFile = Paths.get(String.format("%s.index", file));
+        this.readOnly = readOnly;
+        if(readOnly) {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.robotsChannel = null;
+            this.lock = null;
+        } else {
+            if(file.getParent() != null)
+                Files.createDirectories(file.getParent());
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.lock = this.channel.tryLock();
+            if(this.lock == null) {
+                this.channel.close();
+                throw new IOException(String.format("The results in %s are written by another process", file));
+            }
+            this.robotsChannel = FileChannel.open(this.robotsFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        try {
+            readHeader();
+            readRobotNames();
+            recover();
+        } catch(IOException | RuntimeException e) {
+            closeChannels();
+            throw e;
+        }
+    }
+
+    private void readHeader() throws IOException {
+        if(this.channel.size() == 0 && !this.readOnly) {
+            ByteBuffer header = ByteBuffer.allocate(headerSize);
+            header.putInt(magic).putInt(version).putInt(recordSize).putInt(maxRobots).clear();
+            this.channel.write(header, 0);
+            this.channel.force(true);
+        }
+        ByteBuffer header = ByteBuffer.allocate(16);
+        this.channel.read(header, 0);
+        header.flip();
+        if(header.remaining() < 16 || header.getInt() != magic)
+            throw new IOException(String.format("Not a log of results: %s", this.file));
+        int fileVersion = header.getInt();
+        if(fileVersion != version || header.getInt() != recordSize || header.getInt() != maxRobots)
+            throw new IOException(String.format("Unsupported version %d of the log of results: %s", fileVersion, this.file));
+    }
+
+    /**
+     * Reads the robot names, one per line. A last line without its line break has been cut off by a crash, and is removed.
+     */
+    private void readRobotNames() throws IOException {
+        byte[] names;
+        try {
+            names = Files.readAllBytes(this.robotsFile);
+        } catch(NoSuchFileException e) {
+            // no robot has been stored yet
+            return;
+        }
+        int start = 0;
+        for(int i = 0; i < names.length; i++) {
+            if(names[i] == '\n') {
+                addRobot(new String(names, start, i - start, StandardCharsets.UTF_8));
+                start = i + 1;
+            }
+        }
+        if(start < names.length && !this.readOnly)
+            this.robotsChannel.truncate(start);
+    }
+
+    private int addRobot(String name) {
+        int id = this.robotNames.size();
+        this.robotNames.add(name);
+        this.robotIds.put(name, id);
+        this.robotStats.add(new RobotStats(name));
+        return id;
+    }
+
+    /**
+     * Loads the index if it matches the log, reads the records appended after it, and discards what follows the last valid record.
+     */
+    private void recover() throws IOException {
+        long firstRecord = 0;
+        boolean indexed = readIndex();
+        if(indexed) {
+            firstRecord = this.recordCount;
+        } else {
+            if(Files.exists(this.indexFile))
+                log.warn("The index of {} does not match its results and is rebuilt", this.file);
+            this.recordCount = 0;
+            this.lastChecksum = 0;
+            this.pairingStats.clear();
+            for(int id = 0; id < this.robotStats.size(); id++)
+                this.robotStats.set(id, new RobotStats(this.robotNames.get(id)));
+        }
+
+        long recordsInFile = (this.channel.size() - headerSize) / recordSize;
+        while(this.recordCount < recordsInFile && isValid(this.recordCount)) {
+            apply(this.recordCount);
+            this.recordCount++;
+        }
+        if(indexed && this.recordCount > firstRecord)
+            log.info("Read {} results of {} that were not in the index", this.recordCount - firstRecord, this.file);
+
+        if(this.readOnly)
+            return;
+        // a crash may leave records behind the last valid one, which must not be taken for valid records once it is overwritten
+        long discarded = 0;
+        for(long record = this.recordCount; record < recordsInFile && !isEmpty(record); record++) {
+            ByteBuffer region = getRegion(record);
+            int offset = getOffset(record);
+            for(int i = 0; i < recordSize; i += 8)
+                region.putLong(offset + i, 0);
+            discarded++;
+        }
+        if(discarded > 0) {
+            force();
+            log.warn("Discarded {} records of {} that were cut off by a crash", discarded, this.file);
+        }
+        if(this.recordCount != firstRecord)
+            writeIndex();
+    }
+
+    /**
+     * @return Whether the index has been read and matches the log.
+     */
+    private boolean readIndex() throws IOException {
+        if(!Files.exists(this.indexFile))
+            return false;
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.indexFile)))) {
+            if(in.readInt() != indexMagic || in.readInt() != version)
+                return false;
+            long recordCount = in.readLong();
+            int lastChecksum = in.readInt();
+            int robotCount = in.readInt();
+            long recordsInFile = (this.channel.size() - headerSize) / recordSize;
+            if(robotCount > this.robotNames.size() || recordCount > recordsInFile)
+                return false;
+            if(recordCount > 0 && (!isValid(recordCount - 1) || getRegion(recordCount - 1).getInt(getOffset(recordCount - 1) + checksumOffset) != lastChecksum))
+                return false;
+            for(int id = 0; id < robotCount; id++)
+                this.robotStats.get(id).read(in);
+            int pairingCount = in.readInt();
+            for(int i = 0; i < pairingCount; i++) {
+                int robot = in.readInt();
+                int opponent = in.readInt();
+                if(robot >= robotCount || opponent >= robotCount)
+                    return false;
+                PairingStats pairing = new PairingStats(this.robotNames.get(robot), this.robotNames.get(opponent));
+                pairing.read(in);
+                this.pairingStats.put(getPairingKey(robot, opponent), pairing);
+            }
+            this.recordCount = recordCount;
+            this.lastChecksum = lastChecksum;
+            this.snapshotRecordCount = recordCount;
+            return true;
+        } catch(IOException e) {
+            log.warn("Failed to read the index of {}: {}", this.file, e.toString());
+            return false;
+        }
+    }
+
+    /**
+     * Saves the index, once the records it covers have been written to the disk. The index is replaced atomically,
+     * so a crash leaves either the previous index or the new one.
+     */
+    private void writeIndex() throws IOException {
+        force();
+        Path temporaryFile = Paths.get(String.format("%s.tmp", this.indexFile));
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+            out.writeInt(indexMagic);
+            out.writeInt(version);
+            out.writeLong(this.recordCount);
+            out.writeInt(this.lastChecksum);
+            out.writeInt(this.robotStats.size());
+            for(RobotStats stats : this.robotStats)
+                stats.write(out);
+            out.writeInt(this.pairingStats.size());
+            for(Map.Entry<Long, PairingStats> pairing : this.pairingStats.entrySet()) {
+                out.writeInt((int) (pairing.getKey() >>> 32));
+                out.writeInt((int) (long) pairing.getKey());
+                pairing.getValue().write(out);
+            }
+        }
+        Files.move(temporaryFile, this.indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.snapshotRecordCount = this.recordCount;
+    }
+
+    /**
+     * Appends the outcome of a battle to the log and updates the statistics of its robots.
+     * @param robots The names of the robots, in the order they have entered the arena.
+     * @param seed The seed of the battle.
+     * @param result The outcome of the battle, with the damage of the robots.
+     * @throws IOException If the log cannot be written.
+     */
+    synchronized void append(List<String> robots, long seed, MatchResult result) throws IOException {
+        if(this.readOnly)
+            throw new IllegalStateException(String.format("The results in %s are only read", this.file));
+        if(robots.size() > maxRobots) {
+            if(!this.warnedTooManyRobots)
+                log.warn("Battles with more than {} robots are not stored in {}", maxRobots, this.file);
+            this.warnedTooManyRobots = true;
+            return;
+        }
+        int[] ids = new int[robots.size()];
+        for(int robot = 0; robot < ids.length; robot++)
+            ids[robot] = getRobotId(robots.get(robot));
+
+        ByteBuffer region = getRegion(this.recordCount);
+        int offset = getOffset(this.recordCount);
+        region.putLong(offset + playedAtOffset, System.currentTimeMillis());
+        region.putLong(offset + seedOffset, seed);
+        region.putInt(offset + turnsOffset, result.getTurns());
+        region.put(offset + robotCountOffset, (byte) ids.length);
+        region.put(offset + winnerOffset, (byte) result.getWinner());
+        for(int robot = 0; robot < maxRobots; robot++) {
+            int entry = offset + robotsOffset + robot * robotEntrySize;
+            region.putInt(entry, robot < ids.length ? ids[robot] : 0);
+            region.putInt(entry + 4, robot < ids.length ? result.getDamageDealt()[robot] : 0);
+            region.putInt(entry + 8, robot < ids.length ? result.getDamageTaken()[robot] : 0);
+        }
+        // the checksum is written last, so a record that is cut off does not match it
+        region.putInt(offset + checksumOffset, computeChecksum(region, offset));
+        apply(this.recordCount);
+        this.recordCount++;
+        if(this.recordCount - this.snapshotRecordCount >= snapshotInterval)
+            writeIndex();
+    }
+
+    /**
+     * @return The id of the robot. A new robot is written to the file of the robot names before any record refers to it.
+     */
+    private int getRobotId(String name) throws IOException {
+        Integer id = this.robotIds.get(name);
+        if(id != null)
+            return id;
+        if(name.indexOf('\n') >= 0)
+            throw new IllegalArgumentException(String.format("Invalid robot name: %s", name));
+        ByteBuffer line = ByteBuffer.wrap(String.format("%s\n", name).getBytes(StandardCharsets.UTF_8));
+        long position = this.robotsChannel.size();
+        while(line.hasRemaining())
+            position += this.robotsChannel.write(line, position);
+        this.robotsChannel.force(false);
+        return addRobot(name);
+    }
+
+    /**
+     * Adds a valid record to the statistics.
+     */
+    private void apply(long record) {
+        ByteBuffer region = getRegion(record);
+        int offset = getOffset(record);
+        int turns = region.getInt(offset + turnsOffset);
+        int robotCount = region.get(offset + robotCountOffset);
+        int winner = region.get(offset + winnerOffset);
+        int[] ids = new int[robotCount];
+        for(int robot = 0; robot < robotCount; robot++) {
+            int entry = offset + robotsOffset + robot * robotEntrySize;
+            ids[robot] = region.getInt(entry);
+            RobotStats stats = this.robotStats.get(ids[robot]);
+            stats.matches++;
+            stats.turns += turns;
+            stats.damageDealt += region.getInt(entry + 4);
+            stats.damageTaken += region.getInt(entry + 8);
+            if(winner == robot)
+                stats.wins++;
+            else if(winner < 0)
+                stats.draws++;
+        }
+        for(int robot = 0; robot < robotCount; robot++) {
+            for(int opponent = robot + 1; opponent < robotCount; opponent++) {
+                if(ids[robot] == ids[opponent])
+                    continue;
+                int first = Math.min(ids[robot], ids[opponent]);
+                int second = Math.max(ids[robot], ids[opponent]);
+                PairingStats stats = this.pairingStats.computeIfAbsent(getPairingKey(first, second),
+                        k -> new PairingStats(this.robotNames.get(first), this.robotNames.get(second)));
+                stats.matches++;
+                if(winner >= 0 && ids[winner] == first)
+                    stats.wins++;
+                else if(winner >= 0 && ids[winner] == second)
+                    stats.losses++;
+                else
+                    stats.draws++;
+            }
+        }
+        this.lastChecksum = region.getInt(offset + checksumOffset);
+    }
+
+    private boolean isValid(long record) {
+        ByteBuffer region = getRegion(record);
+        int offset = getOffset(record);
+        int robotCount = region.get(offset + robotCountOffset);
+        int winner = region.get(offset + winnerOffset);
+        if(robotCount < 1 || robotCount > maxRobots || winner < -1 || winner >= robotCount)
+            return false;
+        if(region.getInt(offset + checksumOffset) != computeChecksum(region, offset))
+            return false;
+        for(int robot = 0; robot < robotCount; robot++) {
+            int id = region.getInt(offset + robotsOffset + robot * robotEntrySize);
+            if(id < 0 || id >= this.robotNames.size())
+                return false;
+        }
+        return true;
+    }
+
+    private boolean isEmpty(long record) {
+        ByteBuffer region = getRegion(record);
+        int offset = getOffset(record);
+        for(int i = 0; i < recordSize; i += 8) {
+            if(region.getLong(offset + i) != 0)
+                return false;
+        }
+        return true;
+    }
+
+    private int computeChecksum(ByteBuffer region, int offset) {
+        this.checksum.reset();
+        this.checksum.update(region.slice(offset, checksumOffset));
+        return (int) this.checksum.getValue();
+    }
+
+    /**
+     * @return The region of the log that holds the given record, which is mapped when it is first used.
+     * When the store is written, the log grows by a whole region at a time.
+     */
+    private ByteBuffer getRegion(long record) {
+        int region = (int) ((headerSize + record * recordSize) / regionSize);
+        try {
+            while(this.regions.size() <= region) {
+                long start = (long) this.regions.size() * regionSize;
+                long size = this.readOnly ? Math.min(regionSize, this.channel.size() - start) : regionSize;
+                this.regions.add(this.channel.map(this.readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE, start, size));
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this.regions.get(region);
+    }
+
+    private static int getOffset(long record) {
+        return (int) ((headerSize + record * recordSize) % regionSize);
+    }
+
+    private static long getPairingKey(int robot, int opponent) {
+        return (long) robot << 32 | opponent;
+    }
+
+    private void force() {
+        for(MappedByteBuffer region : this.regions)
+            region.force();
+    }
+
+    /**
+     * @param robot The name of a robot.
+     * @return The statistics of the robot, or null if it has not played any battle.
+     */
+    synchronized RobotStats getRobotStats(String robot) {
+        Integer id = this.robotIds.get(robot);
+        return id != null ? this.robotStats.get(id).copy() : null;
+    }
+
+    /**
+     * @param robot The name of a robot.
+     * @param opponent The name of another robot.
+     * @return The statistics of the battles between both robots, from the point of view of the first one,
+     * or null if they have never met.
+     */
+    synchronized PairingStats getPairingStats(String robot, String opponent) {
+        Integer robotId = this.robotIds.get(robot);
+        Integer opponentId = this.robotIds.get(opponent);
+        if(robotId == null || opponentId == null)
+            return null;
+        PairingStats stats = this.pairingStats.get(getPairingKey(Math.min(robotId, opponentId), Math.max(robotId, opponentId)));
+        if(stats == null)
+            return null;
+        return robotId < opponentId ? stats.copy() : stats.reverse();
+    }
+
+    /**
+     * @param robot The name of a robot.
+     * @return The statistics of the battles of the robot against every robot it has met, from its point of view, by the names of the opponents.
+     */
+    synchronized List<PairingStats> getPairings(String robot) {
+        List<PairingStats> pairings = new ArrayList<PairingStats>();
+        for(PairingStats stats : this.pairingStats.values()) {
+            if(stats.robot.equals(robot))
+                pairings.add(stats.copy());
+            else if(stats.opponent.equals(robot))
+                pairings.add(stats.reverse());
+        }
+        pairings.sort(Comparator.comparing(PairingStats::getOpponent));
+        return pairings;
+    }
+
+    /**
+     * @param minMatches The number of battles a robot must have played to be ranked.
+     * @return The statistics of the robots, from the highest win rate to the lowest.
+     */
+    synchronized List<RobotStats> getLeaderboard(int minMatches) {
+        List<RobotStats> leaderboard = new ArrayList<RobotStats>();
+        for(RobotStats stats : this.robotStats) {
+            if(stats.matches > 0 && stats.matches >= minMatches)
+                leaderboard.add(stats.copy());
+        }
+        leaderboard.sort(Comparator.comparingDouble(RobotStats::getWinRate).thenComparingLong(RobotStats::getWins).reversed());
+        return leaderboard;
+    }
+
+    /**
+     * Saves the index and closes the store.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if(!this.readOnly && this.recordCount != this.snapshotRecordCount)
+                writeIndex();
+        } finally {
+            closeChannels();
+        }
+    }
+
+    private void closeChannels() throws IOException {
+        this.regions.clear();
+        if(this.lock != null)
+            this.lock.release();
+        this.channel.close();
+        if(this.robotsChannel != null)
+            this.robotsChannel.close();
+    }
+
+    /**
+     * The results of a robot over all the battles it has played.
+     */
+    @Getter
+    static class RobotStats {
+        private final String name;
+        private long matches;
+        private long wins;
+        private long draws;
+        private long turns;
+        private long damageDealt;
+        private long damageTaken;
+
+        RobotStats(String name) {
+            this.name = name;
+        }
+
+        long getLosses() {
+            return this.matches - this.wins - this.draws;
+        }
+
+        /**
+         * @return The share of the battles the robot has won, with a draw counting as half a win.
+         */
+        double getWinRate() {
+            return this.matches > 0 ? (this.wins + this.draws / 2.0) / this.matches : 0;
+        }
+
+        private RobotStats copy() {
+            RobotStats copy = new RobotStats(this.name);
+            copy.matches = this.matches;
+            copy.wins = this.wins;
+            copy.draws = this.draws;
+            copy.turns = this.turns;
+            copy.damageDealt = this.damageDealt;
+            copy.damageTaken = this.damageTaken;
+            return copy;
+        }
+
+        private void read(DataInputStream in) throws IOException {
+            this.matches = in.readLong();
+            this.wins = in.readLong();
+            this.draws = in.readLong();
+            this.turns = in.readLong();
+            this.damageDealt = in.readLong();
+            this.damageTaken = in.readLong();
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeLong(this.matches);
+            out.writeLong(this.wins);
+            out.writeLong(this.draws);
+            out.writeLong(this.turns);
+            out.writeLong(this.damageDealt);
+            out.writeLong(this.damageTaken);
+        }
+    }
+
+    /**
+     * The results of the battles between two robots, from the point of view of the first one.
+     * In a battle with more than 2 robots, the battle is a draw between the two robots unless one of them has won it.
+     */
+    @Getter
+    static class PairingStats {
+        private final String robot;
+        private final String opponent;
+        private long matches;
+        private long wins;
+        private long losses;
+        private long draws;
+
+        PairingStats(String robot, String opponent) {
+            this.robot = robot;
+            this.opponent = opponent;
+        }
+
+        /**
+         * @return The share of the battles the robot has won against the opponent, with a draw counting as half a win.
+         */
+        double getWinRate() {
+            return this.matches > 0 ? (this.wins + this.draws / 2.0) / this.matches : 0;
+        }
+
+        private PairingStats copy() {
+            PairingStats copy = new PairingStats(this.robot, this.opponent);
+            copy.matches = this.matches;
+            copy.wins = this.wins;
+            copy.losses = this.losses;
+            copy.draws = this.draws;
+            return copy;
+        }
+
+        /**
+         * @return The same results from the point of view of the opponent.
+         */
+        private PairingStats reverse() {
+            PairingStats reverse = new PairingStats(this.opponent, this.robot);
+            reverse.matches = this.matches;
+            reverse.wins = this.losses;
+            reverse.losses = this.wins;
+            reverse.draws = this.draws;
+            return reverse;
+        }
+
+        private void read(DataInputStream in) throws IOException {
+            this.matches = in.readLong();
+            this.wins = in.readLong();
+            this.losses = in.readLong();
+            this.draws = in.readLong();
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeLong(this.matches);
+            out.writeLong(this.wins);
+            out.writeLong(this.losses);
+            out.writeLong(this.draws);
+        }
+    }
+
+    /**
+     * Queries the results of the battles.
+     * Usage: leaderboard [min battles] | robot NAME | pairing ROBOT OPPONENT
+     * The results are read from the file given by the robotwars.results.store system property (build/match-results.store by default).
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length == 0)
+            throw new IllegalArgumentException("Usage: leaderboard [min battles] | robot NAME | pairing ROBOT OPPONENT");
+        try(MatchResultStore store = new MatchResultStore(getDefaultFile(), true)) {
+            System.out.println(String.format("%d battles stored", store.getRecordCount()));
+            switch(args[0]) {
+                case "leaderboard": {
+                    System.out.println(String.format("%-20s %8s %8s %8s %8s %8s %12s %12s", "Robot", "Battles", "Won", "Drawn", "Lost",
+                            "Win rate", "Dealt", "Taken"));
+                    for(RobotStats stats : store.getLeaderboard(args.length > 1 ? Integer.parseInt(args[1]) : 1)) {
+                        System.out.println(String.format("%-20s %8d %8d %8d %8d %7.1f%% %12d %12d", stats.getName(), stats.getMatches(),
+                                stats.getWins(), stats.getDraws(), stats.getLosses(), 100 * stats.getWinRate(), stats.getDamageDealt(),
+                                stats.getDamageTaken()));
+                    }
+                    break;
+                }
+                case "robot": {
+                    RobotStats stats = store.getRobotStats(args[1]);
+                    if(stats == null) {
+                        System.out.println(String.format("%s has not played any battle", args[1]));
+                        break;
+                    }
+                    System.out.println(String.format("%s: %d battles, %d won, %d drawn, %d lost, %.1f%% win rate, %.1f turns, %.1f damage dealt and %.1f taken per battle",
+                            stats.getName(), stats.getMatches(), stats.getWins(), stats.getDraws(), stats.getLosses(), 100 * stats.getWinRate(),
+                            (double) stats.getTurns() / stats.getMatches(), (double) stats.getDamageDealt() / stats.getMatches(),
+                            (double) stats.getDamageTaken() / stats.getMatches()));
+                    for(PairingStats pairing : store.getPairings(args[1])) {
+                        System.out.println(String.format("  vs %-20s %8d battles %6d won %6d drawn %6d lost %7.1f%%", pairing.getOpponent(),
+                                pairing.getMatches(), pairing.getWins(), pairing.getDraws(), pairing.getLosses(), 100 * pairing.getWinRate()));
+                    }
+                    break;
+                }
+                case "pairing": {
+                    PairingStats pairing = store.getPairingStats(args[1], args[2]);
+                    if(pairing == null) {
+                        System.out.println(String.format("%s and %s have never met", args[1], args[2]));
+                        break;
+                    }
+                    System.out.println(String.format("%s vs %s: %d battles, %d won, %d drawn, %d lost, %.1f%% win rate", pairing.getRobot(),
+                            pairing.getOpponent(), pairing.getMatches(), pairing.getWins(), pairing.getDraws(), pairing.getLosses(),
+                            100 * pairing.getWinRate()));
+                    break;
+                }
+                default:
+                    throw new IllegalArgumentException(String.format("Unknown query %s", args[0]));
+            }
+        }
+    }
+
+    /**
+     * @return The file given by the robotwars.results.store system property, build/match-results.store by default.
+     */
+    static Path getDefaultFile() {
+        return Paths.get(System.getProperty("robotwars.results.store", "build/match-results.store"));
+    }
+}
@@ -0,0 +1,184 @@
+package Arena;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Plays the battles of a distributed tournament in headless arenas, as they are sent by a MatchCoordinator.
+ * The robot files are received once, written to a temporary folder and compiled by the RobotLoader,
+ * so unchanged robots are taken from the robot cache of the machine. The battles are then played in parallel,
+ * and their results are sent back as soon as they finish.
+ *
+ * A battle that cannot be played closes the connection, so the coordinator plays it on another worker.
+ */
+class MatchWorker {
+    private static final Logger log = LoggerFactory.getLogger(MatchWorker.class);
+
+    private final RobotLoader robotLoader = new RobotLoader();
+    private final int threads;
+    private List<Class<? extends Robot>> robotClasses;
+    private List<String> robotNames;
+    private int width;
+    private int height;
+    private Arena.ExecutionMode executionMode;
+
+    /**
+     * @param threads The number of battles played at the same time.
+     */
+    MatchWorker(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Plays the battles sent by the coordinator, until it says goodbye or the connection is closed.
+     * @param socket The connection to the coordinator.
+     */
+    void serve(Socket socket) throws IOException, InterruptedException {
+        socket.setKeepAlive(true);
+        socket.setTcpNoDelay(true);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        out.writeByte(MatchProtocol.hello);
+        out.writeInt(MatchProtocol.magic);
+        out.writeInt(MatchProtocol.version);
+        out.writeInt(this.threads);
+        out.flush();
+
+        MatchProtocol.expect(in, MatchProtocol.robots);
+        try {
+            String rules = loadRobots(in);
+            out.writeByte(MatchProtocol.ready);
+            MatchProtocol.writeString(out, rules);
+        } catch(Exception e) {
+            e.printStackTrace();
+            out.writeByte(MatchProtocol.failed);
+            MatchProtocol.writeString(out, String.valueOf(e.getMessage()));
+        }
+        out.flush();
+
+        ExecutorService pool = Executors.newFixedThreadPool(this.threads);
+        try {
+            while(true) {
+                byte type = in.readByte();
+                if(type == MatchProtocol.bye)
+                    break;
+                if(type != MatchProtocol.match)
+                    throw new IOException(String.format("Expected message %d but received %d", MatchProtocol.match, type));
+                int match = in.readInt();
+                long seed = in.readLong();
+                int[] pairing = new int[in.readInt()];
+                for(int i = 0; i < pairing.length; i++)
+                    pairing[i] = in.readInt();
+                pool.execute(() -> playMatch(socket, out, match, seed, pairing));
+            }
+        } catch(EOFException e) {
+            log.info("The coordinator has closed the connection");
+        } finally {
+            pool.shutdownNow();
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Writes the robot files sent by the coordinator to a temporary folder and compiles them.
+     * Every robot file is written to a folder of its own, since robot files from different folders may have the same name.
+     * @return The rules of the arenas the battles are played in.
+     */
+    private String loadRobots(DataInputStream in) throws Exception {
+        this.width = in.readInt();
+        this.height = in.readInt();
+        this.executionMode = Arena.ExecutionMode.valueOf(MatchProtocol.readString(in));
+        int robotCount = in.readInt();
+        Path folder = Files.createTempDirectory("robotwars-worker");
+        List<String> robotFilePaths = new ArrayList<String>();
+        for(int i = 0; i < robotCount; i++) {
+            String name = MatchProtocol.readString(in);
+            String code = MatchProtocol.readString(in);
+            Path robotFile = Files.createDirectories(folder.resolve(Integer.toString(i))).resolve(name);
+            Files.write(robotFile, code.getBytes(StandardCharsets.UTF_8));
+            robotFilePaths.add(robotFile.toString());
+        }
+        this.robotClasses = this.robotLoader.loadClasses(robotFilePaths);
+        this.robotNames = RobotLoader.getRobotNames(robotFilePaths);
+        log.info("Loaded {} robots", robotCount);
+        return new Arena(0, this.width, this.height, this.executionMode).getRules();
+    }
+
+    /**
+     * Plays a single battle and sends its result. If the battle fails, the connection is closed.
+     */
+    private void playMatch(Socket socket, DataOutputStream out, int match, long seed, int[] pairing) {
+        try {
+            Arena arena = new Arena(seed, this.width, this.height, this.executionMode);
+            for(int robot : pairing) {
+                Robot instance = this.robotLoader.newInstance(RobotLoader.isolate(this.robotClasses.get(robot)));
+                instance.setName(this.robotNames.get(robot));
+                arena.addRobot(instance);
+            }
+            MatchResult result = arena.play();
+            synchronized(out) {
+                out.writeByte(MatchProtocol.result);
+                out.writeInt(match);
+                MatchProtocol.writeResult(out, result);
+                out.flush();
+            }
+        } catch(InterruptedException e) {
+            // the worker is shutting down
+        } catch(Exception e) {
+            e.printStackTrace();
+            try {
+                socket.close();
+            } catch(IOException closeException) {
+                closeException.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Entry point of a worker of a distributed tournament.
+     * Usage: host port [--threads N]
+     * The worker connects to the coordinator started with Tournament --coordinator port, retrying for a minute
+     * if the coordinator is not listening yet, and exits when all the battles have been played.
+     */
+    public static void main(String[] args) throws Exception {
+        String host = args[0];
+        int port = Integer.parseInt(args[1]);
+        int threads = Runtime.getRuntime().availableProcessors();
+        for(int i = 2; i < args.length; i++) {
+            switch(args[i]) {
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                default: throw new IllegalArgumentException(String.format("Unknown option %s", args[i]));
+            }
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+        while(true) {
+            try(Socket socket = new Socket(host, port)) {
+                log.info("Connected to the coordinator at {}:{}", host, port);
+                new MatchWorker(threads).serve(socket);
+                return;
+            } catch(ConnectException e) {
+                if(System.nanoTime() > deadline)
+                    throw e;
+                Thread.sleep(1000);
+            }
+        }
+    }
+}
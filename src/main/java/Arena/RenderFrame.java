@@ -0,0 +1,98 @@
+package Arena;
+
+import java.util.List;
+
+/**
+ * The state of the arena at the end of a turn, as it is drawn by the ArenaGUI.
+ * A frame is captured on the thread that plays the battle and is not changed while the event dispatch thread draws it,
+ * so the next turns can be played in the meantime. The ArenaGUI recycles the frames it no longer needs,
+ * so the arrays are reused instead of reallocated every turn, however many rockets are in the air.
+ * The robots are indexed in the order of the robots remaining in the arena, and carry their slots in the EntityStore.
+ *
+ * Every frame also holds where its robots and rockets were before their last move, so the GUI can draw the entities
+ * moving smoothly between two turns, whatever the rate at which turns are played and frames are drawn.
+ */
+class RenderFrame {
+    int turn;
+    long capturedAt;
+    long interval;
+    int robotCount;
+    int[] robotSlot = new int[0];
+    double[] robotX = new double[0];
+    double[] robotY = new double[0];
+    double[] previousRobotX = new double[0];
+    double[] previousRobotY = new double[0];
+    double[] robotDirection = new double[0];
+    int[] robotHealth = new int[0];
+    int[] robotSpeed = new int[0];
+    int rocketCount;
+    double[] rocketX = new double[0];
+    double[] rocketY = new double[0];
+    double[] previousRocketX = new double[0];
+    double[] previousRocketY = new double[0];
+
+    /**
+     * Overwrites this frame with the state of the given robots and rockets.
+     * @param turn The turn that has ended.
+     * @param robots The robots remaining in the arena.
+     * @param rockets The rockets in the air.
+     * @param previous The frame of the previous turn, or null if there is none, e.g. after a jump in a replay.
+     * Without it, the entities are drawn where they are in this frame.
+     */
+    void capture(int turn, List<Robot> robots, List<Rocket> rockets, RenderFrame previous) {
+        this.turn = turn;
+        this.capturedAt = System.nanoTime();
+        this.interval = previous != null ? this.capturedAt - previous.capturedAt : 0;
+
+        this.robotCount = robots.size();
+        if(this.robotSlot.length < this.robotCount) {
+            int capacity = Math.max(4, 2 * this.robotCount);
+            this.robotSlot = new int[capacity];
+            this.robotX = new double[capacity];
+            this.robotY = new double[capacity];
+            this.previousRobotX = new double[capacity];
+            this.previousRobotY = new double[capacity];
+            this.robotDirection = new double[capacity];
+            this.robotHealth = new int[capacity];
+            this.robotSpeed = new int[capacity];
+        }
+        for(int i = 0; i < this.robotCount; i++) {
+            Robot robot = robots.get(i);
+            this.robotSlot[i] = robot.getSlot();
+            this.robotX[i] = robot.getCurrentX();
+            this.robotY[i] = robot.getCurrentY();
+            this.previousRobotX[i] = previous != null ? robot.getPreviousX() : this.robotX[i];
+            this.previousRobotY[i] = previous != null ? robot.getPreviousY() : this.robotY[i];
+            this.robotDirection[i] = robot.getCurrentDirection();
+            this.robotHealth[i] = robot.getCurrentHealth();
+            this.robotSpeed[i] = robot.getCurrentSpeed();
+        }
+
+        this.rocketCount = rockets.size();
+        if(this.rocketX.length < this.rocketCount) {
+            int capacity = Math.max(16, 2 * this.rocketCount);
+            this.rocketX = new double[capacity];
+            this.rocketY = new double[capacity];
+            this.previousRocketX = new double[capacity];
+            this.previousRocketY = new double[capacity];
+        }
+        for(int i = 0; i < this.rocketCount; i++) {
+            Rocket rocket = rockets.get(i);
+            this.rocketX[i] = rocket.getX();
+            this.rocketY[i] = rocket.getY();
+            this.previousRocketX[i] = previous != null ? rocket.getPreviousX() : this.rocketX[i];
+            this.previousRocketY[i] = previous != null ? rocket.getPreviousY() : this.rocketY[i];
+        }
+    }
+
+    /**
+     * @param now The System.nanoTime at which the frame is drawn.
+     * @return How far the entities have moved from their previous locations to their locations in this frame, between 0 and 1.
+     * The entities are drawn one turn behind the battle, reaching their locations in this frame when the next frame is due.
+     */
+    double getProgress(long now) {
+        if(this.interval <= 0)
+            return 1;
+        return Math.min(1, Math.max(0, (double) (now - this.capturedAt) / this.interval));
+    }
+}
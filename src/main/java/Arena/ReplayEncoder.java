@@ -0,0 +1,220 @@
+package Arena;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes the events of a battle into the header and the frames of the ReplayFormat, and hands them to a subclass,
+ * which writes them to a replay file or streams them to spectators.
+ * The frames are encoded into reusable buffers, so encoding adds little to a turn.
+ */
+abstract class ReplayEncoder implements ArenaListener {
+    private static final int bufferSize = 1 << 16;
+
+    private final int width;
+    private final int height;
+    private final int keyframeInterval;
+    private ByteBuffer frame = ByteBuffer.allocate(bufferSize);
+    private ByteBuffer events = ByteBuffer.allocate(bufferSize);
+    private int eventCount;
+    private boolean headerWritten;
+
+    private final List<String> robotNames = new ArrayList<String>();
+    private int[] robotX = new int[0];
+    private int[] robotY = new int[0];
+    private int[] robotDirection = new int[0];
+    private int[] robotHealth = new int[0];
+    private int[] robotSpeed = new int[0];
+
+    private final Map<Rocket, Integer> rocketIds = new IdentityHashMap<Rocket, Integer>();
+    /**
+     * The ids of the rockets that have exploded, which are given to the next rockets fired.
+     */
+    private final ArrayDeque<Integer> freeRocketIds = new ArrayDeque<Integer>();
+    private int nextRocketId;
+    private int[] rocketX = new int[0];
+    private int[] rocketY = new int[0];
+
+    /**
+     * @param width The width of the arena.
+     * @param height The height of the arena.
+     * @param keyframeInterval The number of turns between two keyframes.
+     */
+    ReplayEncoder(int width, int height, int keyframeInterval) {
+        this.width = width;
+        this.height = height;
+        this.keyframeInterval = keyframeInterval;
+    }
+
+    /**
+     * Writes the header, once all the robots have entered the arena.
+     * @param header The header, which is only valid until this method returns.
+     */
+    abstract void writeHeader(ByteBuffer header);
+
+    /**
+     * Writes a frame, without its length.
+     * @param frame The frame, which is only valid until this method returns.
+     * @param type The type of the frame, ReplayFormat.keyframe, deltaFrame or endFrame.
+     */
+    abstract void writeFrame(ByteBuffer frame, byte type);
+
+    @Override
+    public void robotAdded(Robot robot) {
+        int slot = robot.getSlot();
+        while(this.robotNames.size() <= slot)
+            this.robotNames.add(null);
+        this.robotNames.set(slot, robot.getName());
+        if(slot >= this.robotX.length) {
+            int capacity = Math.max(4, 2 * slot);
+            this.robotX = Arrays.copyOf(this.robotX, capacity);
+            this.robotY = Arrays.copyOf(this.robotY, capacity);
+            this.robotDirection = Arrays.copyOf(this.robotDirection, capacity);
+            this.robotHealth = Arrays.copyOf(this.robotHealth, capacity);
+            this.robotSpeed = Arrays.copyOf(this.robotSpeed, capacity);
+        }
+    }
+
+    @Override
+    public void robotRemoved(Robot robot) {
+        this.events = ensureCapacity(this.events, 6);
+        this.events.put(ReplayFormat.robotRemoved);
+        ReplayFormat.putVarInt(this.events, robot.getSlot());
+        this.eventCount++;
+    }
+
+    @Override
+    public void rocketFired(Rocket rocket) {
+        Integer freeId = this.freeRocketIds.poll();
+        int id = freeId != null ? freeId : this.nextRocketId++;
+        this.rocketIds.put(rocket, id);
+        if(id >= this.rocketX.length) {
+            this.rocketX = Arrays.copyOf(this.rocketX, Math.max(64, 2 * id));
+            this.rocketY = Arrays.copyOf(this.rocketY, this.rocketX.length);
+        }
+        this.rocketX[id] = 0;
+        this.rocketY[id] = 0;
+
+        this.events = ensureCapacity(this.events, 11);
+        this.events.put(ReplayFormat.rocketFired);
+        ReplayFormat.putVarInt(this.events, id);
+        ReplayFormat.putVarInt(this.events, rocket.getSender().getSlot());
+        this.eventCount++;
+    }
+
+    @Override
+    public void rocketExploded(Rocket rocket) {
+        this.events = ensureCapacity(this.events, 6);
+        this.events.put(ReplayFormat.rocketExploded);
+        int id = this.rocketIds.remove(rocket);
+        ReplayFormat.putVarInt(this.events, id);
+        this.eventCount++;
+        this.freeRocketIds.push(id);
+    }
+
+    @Override
+    public void turnStarted(int turn) {
+        if(this.headerWritten)
+            return;
+        this.headerWritten = true;
+        this.frame.clear();
+        this.frame.putInt(ReplayFormat.magic);
+        ReplayFormat.putVarInt(this.frame, ReplayFormat.version);
+        ReplayFormat.putVarInt(this.frame, this.width);
+        ReplayFormat.putVarInt(this.frame, this.height);
+        ReplayFormat.putVarInt(this.frame, this.robotNames.size());
+        for(String robotName : this.robotNames) {
+            byte[] name = robotName.getBytes(StandardCharsets.UTF_8);
+            this.frame = ensureCapacity(this.frame, 5 + name.length);
+            ReplayFormat.putVarInt(this.frame, name.length);
+            this.frame.put(name);
+        }
+        this.frame.flip();
+        writeHeader(this.frame);
+    }
+
+    @Override
+    public void turnEnded(int turn, List<Robot> robots, List<Rocket> rockets) {
+        boolean isKeyframe = turn % this.keyframeInterval == 0;
+        this.frame.clear();
+        this.frame = ensureCapacity(this.frame, 20 + this.events.position() + 30 * robots.size() + 20 * rockets.size());
+        this.frame.put(isKeyframe ? ReplayFormat.keyframe : ReplayFormat.deltaFrame);
+        ReplayFormat.putVarInt(this.frame, turn);
+
+        ReplayFormat.putVarInt(this.frame, this.eventCount);
+        this.events.flip();
+        this.frame.put(this.events);
+        this.events.clear();
+        this.eventCount = 0;
+
+        ReplayFormat.putVarInt(this.frame, robots.size());
+        for(int i = 0; i < robots.size(); i++) {
+            Robot robot = robots.get(i);
+            int slot = robot.getSlot();
+            ReplayFormat.putVarInt(this.frame, slot);
+            this.robotX[slot] = putDelta(ReplayFormat.quantize(robot.getCurrentX()), this.robotX[slot], isKeyframe);
+            this.robotY[slot] = putDelta(ReplayFormat.quantize(robot.getCurrentY()), this.robotY[slot], isKeyframe);
+            this.robotDirection[slot] = putDelta(ReplayFormat.quantize(robot.getCurrentDirection()), this.robotDirection[slot], isKeyframe);
+            this.robotHealth[slot] = putDelta(robot.getCurrentHealth(), this.robotHealth[slot], isKeyframe);
+            this.robotSpeed[slot] = putDelta(robot.getCurrentSpeed(), this.robotSpeed[slot], isKeyframe);
+        }
+
+        ReplayFormat.putVarInt(this.frame, rockets.size());
+        for(int i = 0; i < rockets.size(); i++) {
+            Rocket rocket = rockets.get(i);
+            int id = this.rocketIds.get(rocket);
+            ReplayFormat.putVarInt(this.frame, id);
+            if(isKeyframe)
+                ReplayFormat.putVarInt(this.frame, rocket.getSender().getSlot());
+            this.rocketX[id] = putDelta(ReplayFormat.quantize(rocket.getX()), this.rocketX[id], isKeyframe);
+            this.rocketY[id] = putDelta(ReplayFormat.quantize(rocket.getY()), this.rocketY[id], isKeyframe);
+        }
+
+        this.frame.flip();
+        writeFrame(this.frame, isKeyframe ? ReplayFormat.keyframe : ReplayFormat.deltaFrame);
+    }
+
+    @Override
+    public void winnerDeclared(Robot winner) {
+        writeEndFrame(winner.getSlot());
+    }
+
+    @Override
+    public void drawDeclared() {
+        writeEndFrame(-1);
+    }
+
+    private void writeEndFrame(int winner) {
+        this.frame.clear();
+        this.frame.put(ReplayFormat.endFrame);
+        ReplayFormat.putVarInt(this.frame, winner);
+        this.frame.flip();
+        writeFrame(this.frame, ReplayFormat.endFrame);
+    }
+
+    /**
+     * Writes the value as the difference to its value in the previous frame, or as is in a keyframe.
+     * @return The value, to be kept for the next frame.
+     */
+    private int putDelta(int value, int previousValue, boolean isKeyframe) {
+        ReplayFormat.putVarInt(this.frame, isKeyframe ? value : value - previousValue);
+        return value;
+    }
+
+    /**
+     * @return The given buffer if it has the required space left, otherwise a larger copy of it.
+     */
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int required) {
+        if(buffer.remaining() >= required)
+            return buffer;
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * buffer.capacity(), buffer.position() + required));
+        buffer.flip();
+        return larger.put(buffer);
+    }
+}
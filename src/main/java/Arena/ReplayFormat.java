@@ -0,0 +1,70 @@
+package Arena;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The binary format of the replay files written by the ReplayWriter and read by the ReplayPlayer.
+ *
+ * A replay starts with a header: the magic number, the format version, the size of the arena and the names of the robots,
+ * whose ids are their slots in the arena. It is followed by one frame per turn, each prefixed by its length in bytes,
+ * so that a reader can skip frames without decoding them.
+ * A frame holds the turn number, the events of the turn and the state of every robot and rocket at the end of the turn.
+ * The state is stored as fixed-point integers encoded as differences to the previous frame, which are mostly 0 or 1 byte long.
+ * Every keyframeInterval turns the differences are taken to 0 instead, so playback can start from any keyframe.
+ * A rocket is identified by an id that is given back once it has exploded, so the ids stay below the number of rockets in the air,
+ * and its state is taken as a difference to 0 in the frame it is fired in.
+ * The last frame holds the outcome of the battle.
+ */
+final class ReplayFormat {
+    static final int magic = 0x52575250;
+    static final int version = 1;
+    static final int keyframeInterval = 100;
+    /**
+     * Coordinates and directions are stored in hundredths.
+     */
+    static final int scale = 100;
+
+    static final byte keyframe = 1;
+    static final byte deltaFrame = 2;
+    static final byte endFrame = 3;
+
+    static final byte robotRemoved = 1;
+    static final byte rocketFired = 2;
+    static final byte rocketExploded = 3;
+
+    private ReplayFormat() { }
+
+    static int quantize(double value) {
+        return (int) Math.round(value * scale);
+    }
+
+    static double dequantize(int value) {
+        return (double) value / scale;
+    }
+
+    /**
+     * Writes the value as a zigzag encoded variable length integer, so that small positive and negative values take a single byte.
+     */
+    static void putVarInt(ByteBuffer buffer, int value) {
+        int zigzag = (value << 1) ^ (value >> 31);
+        while((zigzag & ~0x7F) != 0) {
+            buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        buffer.put((byte) zigzag);
+    }
+
+    /**
+     * Reads a value written by putVarInt.
+     */
+    static int getVarInt(ByteBuffer buffer) {
+        int zigzag = 0;
+        for(int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            zigzag |= (b & 0x7F) << shift;
+            if(b >= 0)
+                break;
+        }
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+}
@@ -0,0 +1,352 @@
+package Arena;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import lombok.Getter;
+
+/**
+ * Plays back a replay file written by the ReplayWriter, notifying a listener such as the ArenaGUI
+ * of the same events the arena notified while the battle was played.
+ * No robot code is run and nothing is compiled: the robots and rockets are plain views on an EntityStore
+ * that is filled from the file. The file is memory mapped, and an index of its keyframes is built when it is opened,
+ * so playback can jump to any turn by decoding at most ReplayFormat.keyframeInterval frames.
+ * A SpectatorClient uses it as well, to decode the frames it receives one by one from a live battle.
+ */
+class ReplayPlayer {
+    private final ByteBuffer replay;
+    private final @Getter int width;
+    private final @Getter int height;
+    private final String[] robotNames;
+    private final int firstFrame;
+    private final List<int[]> keyframes = new ArrayList<int[]>();
+    private @Getter int lastTurn = -1;
+
+    private EntityStore store;
+    private Robot[] robots;
+    private final List<Robot> remainingRobots = new ArrayList<Robot>();
+    private final Map<Integer, Rocket> rockets = new HashMap<Integer, Rocket>();
+    private int[] robotX, robotY, robotDirection, robotHealth, robotSpeed;
+    private int[] rocketX = new int[64];
+    private int[] rocketY = new int[64];
+    private @Getter int turn = -1;
+    private @Getter boolean finished;
+
+    /**
+     * Opens the replay file and indexes its keyframes.
+     * @param file The replay file.
+     * @throws IOException If the file cannot be read or is not a replay.
+     */
+    ReplayPlayer(Path file) throws IOException {
+        this(map(file), file.toString());
+    }
+
+    /**
+     * Reads the header of a replay, and indexes the keyframes of the frames that follow it, if any.
+     * @param replay The replay, or only its header, e.g. the header received by a SpectatorClient.
+     * @param source Where the replay comes from, for the error messages.
+     * @throws IOException If the replay is not in the ReplayFormat.
+     */
+    ReplayPlayer(ByteBuffer replay, String source) throws IOException {
+        this.replay = replay;
+        if(this.replay.remaining() < 4 || this.replay.getInt() != ReplayFormat.magic)
+            throw new IOException(String.format("Not a replay: %s", source));
+        int version = ReplayFormat.getVarInt(this.replay);
+        if(version != ReplayFormat.version)
+            throw new IOException(String.format("Unsupported replay version %d: %s", version, source));
+        this.width = ReplayFormat.getVarInt(this.replay);
+        this.height = ReplayFormat.getVarInt(this.replay);
+        this.robotNames = new String[ReplayFormat.getVarInt(this.replay)];
+        for(int i = 0; i < this.robotNames.length; i++) {
+            byte[] name = new byte[ReplayFormat.getVarInt(this.replay)];
+            this.replay.get(name);
+            this.robotNames[i] = new String(name, StandardCharsets.UTF_8);
+        }
+        this.firstFrame = this.replay.position();
+        indexFrames();
+        reset();
+    }
+
+    private static ByteBuffer map(Path file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Walks over the length prefixes of the frames to find the keyframes.
+     * A truncated last frame, e.g. of a battle that was aborted, is cut off.
+     */
+    private void indexFrames() {
+        while(this.replay.remaining() >= 4) {
+            int offset = this.replay.position();
+            int length = this.replay.getInt();
+            if(length <= 0 || this.replay.remaining() < length) {
+                this.replay.limit(offset);
+                break;
+            }
+            byte type = this.replay.get();
+            if(type != ReplayFormat.endFrame) {
+                this.lastTurn = ReplayFormat.getVarInt(this.replay);
+                if(type == ReplayFormat.keyframe)
+                    this.keyframes.add(new int[]{this.lastTurn, offset});
+            }
+            this.replay.position(offset + 4 + length);
+        }
+    }
+
+    /**
+     * Clears the state, leaving all robots outside of the arena.
+     */
+    private void reset() {
+        this.store = new EntityStore(this.width, this.height);
+        this.robots = new Robot[this.robotNames.length];
+        for(int i = 0; i < this.robots.length; i++) {
+            this.robots[i] = new Robot();
+            this.robots[i].attach(this.store, this.store.addRobot(0, 0, 0));
+            this.robots[i].setName(this.robotNames[i]);
+        }
+        this.robotX = new int[this.robots.length];
+        this.robotY = new int[this.robots.length];
+        this.robotDirection = new int[this.robots.length];
+        this.robotHealth = new int[this.robots.length];
+        this.robotSpeed = new int[this.robots.length];
+        this.remainingRobots.clear();
+        this.rockets.clear();
+        this.turn = -1;
+        this.finished = false;
+    }
+
+    /**
+     * Jumps to the end of the given turn. The listener is told to remove everything it displays,
+     * and is then told about the robots and rockets present at that turn, as if they had just entered the arena.
+     * @param turn The turn to jump to. It is clamped to the turns in the replay.
+     * @param listener The listener that displays the replay.
+     */
+    void seek(int turn, ArenaListener listener) {
+        for(Rocket rocket : getRockets())
+            listener.rocketExploded(rocket);
+        for(Robot robot : this.remainingRobots)
+            listener.robotRemoved(robot);
+
+        reset();
+        turn = Math.min(turn, this.lastTurn);
+        int offset = this.firstFrame;
+        for(int[] keyframe : this.keyframes) {
+            if(keyframe[0] > turn)
+                break;
+            offset = keyframe[1];
+        }
+        this.replay.position(offset);
+        ArenaListener silentListener = new ArenaListener() { };
+        while(this.turn < turn) {
+            if(!next(silentListener))
+                break;
+        }
+
+        for(Robot robot : this.remainingRobots)
+            listener.robotAdded(robot);
+        for(Rocket rocket : getRockets())
+            listener.rocketFired(rocket);
+        listener.turnStarted(this.turn);
+        listener.turnEnded(this.turn, this.remainingRobots, getRockets());
+    }
+
+    /**
+     * Plays the next turn of the replay.
+     * @param listener The listener that displays the replay.
+     * @return False if the replay has ended, true otherwise.
+     */
+    boolean next(ArenaListener listener) {
+        if(this.finished || !this.replay.hasRemaining())
+            return false;
+        this.replay.getInt();
+        return playFrame(this.replay, listener);
+    }
+
+    /**
+     * Plays the given frame, which follows the frame played before, or is a keyframe.
+     * A keyframe may also follow a gap, e.g. when a spectator has skipped frames to catch up with a live battle:
+     * the robots and rockets that have come or gone in between are then added or removed as the keyframe shows.
+     * @param frame The frame, without its length, from its position on.
+     * @param listener The listener that displays the replay.
+     * @return False if the frame is the last one, true otherwise.
+     */
+    boolean playFrame(ByteBuffer frame, ArenaListener listener) {
+        if(this.finished)
+            return false;
+        byte type = frame.get();
+        if(type == ReplayFormat.endFrame) {
+            int winner = ReplayFormat.getVarInt(frame);
+            if(winner < 0)
+                listener.drawDeclared();
+            else
+                listener.winnerDeclared(this.robots[winner]);
+            this.finished = true;
+            return false;
+        }
+
+        boolean isKeyframe = type == ReplayFormat.keyframe;
+        this.turn = ReplayFormat.getVarInt(frame);
+        listener.turnStarted(this.turn);
+
+        int eventCount = ReplayFormat.getVarInt(frame);
+        for(int i = 0; i < eventCount; i++) {
+            byte event = frame.get();
+            int id = ReplayFormat.getVarInt(frame);
+            if(event == ReplayFormat.robotRemoved) {
+                this.remainingRobots.remove(this.robots[id]);
+                listener.robotRemoved(this.robots[id]);
+            } else if(event == ReplayFormat.rocketFired) {
+                listener.rocketFired(addRocket(id, ReplayFormat.getVarInt(frame)));
+            } else if(event == ReplayFormat.rocketExploded) {
+                // after a jump to a keyframe, the rockets fired before it are not known
+                Rocket rocket = this.rockets.remove(id);
+                if(rocket == null)
+                    continue;
+                listener.rocketExploded(rocket);
+                this.store.removeRocket(rocket.getSlot());
+            }
+        }
+
+        boolean[] wasRemaining = null;
+        if(isKeyframe) {
+            wasRemaining = new boolean[this.robots.length];
+            for(Robot robot : this.remainingRobots)
+                wasRemaining[robot.getSlot()] = true;
+        }
+        this.remainingRobots.clear();
+        int robotCount = ReplayFormat.getVarInt(frame);
+        for(int i = 0; i < robotCount; i++) {
+            int slot = ReplayFormat.getVarInt(frame);
+            this.robotX[slot] = getDelta(frame, this.robotX[slot], isKeyframe);
+            this.robotY[slot] = getDelta(frame, this.robotY[slot], isKeyframe);
+            this.robotDirection[slot] = getDelta(frame, this.robotDirection[slot], isKeyframe);
+            this.robotHealth[slot] = getDelta(frame, this.robotHealth[slot], isKeyframe);
+            this.robotSpeed[slot] = getDelta(frame, this.robotSpeed[slot], isKeyframe);
+            this.store.robotPreviousX[slot] = this.store.robotX[slot];
+            this.store.robotPreviousY[slot] = this.store.robotY[slot];
+            this.store.robotX[slot] = ReplayFormat.dequantize(this.robotX[slot]);
+            this.store.robotY[slot] = ReplayFormat.dequantize(this.robotY[slot]);
+            this.store.robotHealth[slot] = this.robotHealth[slot];
+            this.store.setRobotMotion(slot, ReplayFormat.dequantize(this.robotDirection[slot]), this.robotSpeed[slot]);
+            this.remainingRobots.add(this.robots[slot]);
+        }
+        if(isKeyframe) {
+            for(Robot robot : this.remainingRobots) {
+                if(!wasRemaining[robot.getSlot()])
+                    listener.robotAdded(robot);
+                wasRemaining[robot.getSlot()] = false;
+            }
+            for(int slot = 0; slot < wasRemaining.length; slot++) {
+                if(wasRemaining[slot])
+                    listener.robotRemoved(this.robots[slot]);
+            }
+        }
+
+        Set<Integer> keyframeRockets = isKeyframe ? new HashSet<Integer>() : null;
+        int rocketCount = ReplayFormat.getVarInt(frame);
+        for(int i = 0; i < rocketCount; i++) {
+            int id = ReplayFormat.getVarInt(frame);
+            Rocket rocket = this.rockets.get(id);
+            if(isKeyframe) {
+                int sender = ReplayFormat.getVarInt(frame);
+                keyframeRockets.add(id);
+                if(rocket == null) {
+                    rocket = addRocket(id, sender);
+                    listener.rocketFired(rocket);
+                }
+            }
+            this.rocketX[id] = getDelta(frame, this.rocketX[id], isKeyframe);
+            this.rocketY[id] = getDelta(frame, this.rocketY[id], isKeyframe);
+            this.store.rocketPreviousX[rocket.getSlot()] = this.store.rocketX[rocket.getSlot()];
+            this.store.rocketPreviousY[rocket.getSlot()] = this.store.rocketY[rocket.getSlot()];
+            this.store.rocketX[rocket.getSlot()] = ReplayFormat.dequantize(this.rocketX[id]);
+            this.store.rocketY[rocket.getSlot()] = ReplayFormat.dequantize(this.rocketY[id]);
+        }
+        if(isKeyframe) {
+            for(Iterator<Map.Entry<Integer, Rocket>> rockets = this.rockets.entrySet().iterator(); rockets.hasNext(); ) {
+                Map.Entry<Integer, Rocket> rocket = rockets.next();
+                if(keyframeRockets.contains(rocket.getKey()))
+                    continue;
+                rockets.remove();
+                listener.rocketExploded(rocket.getValue());
+                this.store.removeRocket(rocket.getValue().getSlot());
+            }
+        }
+
+        listener.turnEnded(this.turn, this.remainingRobots, getRockets());
+        return true;
+    }
+
+    /**
+     * @return The rockets in the air.
+     */
+    List<Rocket> getRockets() {
+        return Arrays.asList(this.store.rockets).subList(0, this.store.rocketCount);
+    }
+
+    /**
+     * Adds a rocket at the location of its sender.
+     */
+    private Rocket addRocket(int id, int sender) {
+        Rocket rocket = new Rocket(this.robots[sender], this.store);
+        this.store.addRocket(rocket, sender, 0, 0, rocket.getSpeed(), 0);
+        this.rockets.put(id, rocket);
+        if(id >= this.rocketX.length) {
+            this.rocketX = Arrays.copyOf(this.rocketX, 2 * id);
+            this.rocketY = Arrays.copyOf(this.rocketY, 2 * id);
+        }
+        // the id may have belonged to a rocket that has exploded, or to a rocket of a later turn played before a jump back
+        this.rocketX[id] = 0;
+        this.rocketY[id] = 0;
+        return rocket;
+    }
+
+    private static int getDelta(ByteBuffer frame, int previousValue, boolean isKeyframe) {
+        int delta = ReplayFormat.getVarInt(frame);
+        return isKeyframe ? delta : previousValue + delta;
+    }
+
+    /**
+     * Plays a replay file in the GUI.
+     * Usage: replay-file [--speed factor] [--from turn]
+     * The speed is relative to the 60 turns per second at which battles are watched live.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path file = null;
+        double speed = 1;
+        int from = 0;
+        for(int i = 0; i < args.length; i++) {
+            switch(args[i]) {
+                case "--speed": speed = Double.parseDouble(args[++i]); break;
+                case "--from": from = Integer.parseInt(args[++i]); break;
+                default: file = Paths.get(args[i]);
+            }
+        }
+        if(file == null)
+            throw new IllegalArgumentException("Usage: replay-file [--speed factor] [--from turn]");
+
+        ReplayPlayer player = new ReplayPlayer(file);
+        // the rules of the battle are not recorded, so the last turn of the replay is shown instead of the maximum number of turns
+        ArenaGUI gui = new ArenaGUI(player.getLastTurn());
+        TickClock clock = new TickClock(60 * speed);
+        player.seek(from, gui);
+        do {
+            clock.awaitTick();
+        } while(player.next(gui));
+    }
+}
@@ -0,0 +1,90 @@
+package Arena;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Records a battle into a replay file in the ReplayFormat, which can be played back later by the ReplayPlayer.
+ * The frames are written to the file in large chunks, so recording adds little to a turn, and the chunk is flushed after every keyframe.
+ * The file is closed when the battle ends, or by Arena.shutdown if the battle is aborted, in which case the replay can still be played
+ * up to its last complete frame. If the process dies instead, the replay can be played up to its last keyframe.
+ */
+class ReplayWriter extends ReplayEncoder implements Closeable {
+    private static final int bufferSize = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer output = ByteBuffer.allocateDirect(bufferSize);
+    private final ByteBuffer frameLength = ByteBuffer.allocate(4);
+
+    /**
+     * @param file The file the replay is written to. An existing file is overwritten.
+     * @param width The width of the arena.
+     * @param height The height of the arena.
+     */
+    ReplayWriter(Path file, int width, int height) throws IOException {
+        super(width, height, ReplayFormat.keyframeInterval);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Override
+    void writeHeader(ByteBuffer header) {
+        write(header);
+    }
+
+    /**
+     * Writes the frame prefixed by its length, flushes the file after a keyframe, and closes it after the last frame.
+     */
+    @Override
+    void writeFrame(ByteBuffer frame, byte type) {
+        this.frameLength.clear();
+        this.frameLength.putInt(frame.remaining()).flip();
+        write(this.frameLength);
+        write(frame);
+        try {
+            if(type == ReplayFormat.keyframe)
+                flush();
+            else if(type == ReplayFormat.endFrame)
+                close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the buffered frames to the file and closes it.
+     */
+    @Override
+    public void close() throws IOException {
+        if(!this.channel.isOpen())
+            return;
+        flush();
+        this.channel.close();
+    }
+
+    private void write(ByteBuffer data) {
+        try {
+            if(this.output.remaining() < data.remaining())
+                flush();
+            if(this.output.remaining() < data.remaining()) {
+                while(data.hasRemaining())
+                    this.channel.write(data);
+            } else {
+                this.output.put(data);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void flush() throws IOException {
+        this.output.flip();
+        while(this.output.hasRemaining())
+            this.channel.write(this.output);
+        this.output.clear();
+    }
+}
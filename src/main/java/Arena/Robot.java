@@ -1,123 +1,286 @@
 package Arena;
 
+import java.util.Arrays;
+
 import lombok.*;
-import javax.swing.*;
 
-@AllArgsConstructor
 public class Robot implements Runnable {
-    private int health = 100;
-    private double direction = 0;
-    private int speed = 0;
-    private @Getter(AccessLevel.PROTECTED) Location location;
-    private @Setter Arena arena;
-    private @Getter JPanel element;
-    private @Getter @Setter JTextArea info;
+    private EntityStore store;
+    private @Getter(AccessLevel.PACKAGE) int slot;
+    private @Setter(AccessLevel.PACKAGE) String name;
+    private @Getter(AccessLevel.PACKAGE) @Setter(AccessLevel.PACKAGE) MatchRandom random;
+
+    private WorldSnapshot snapshot;
+    private boolean moveIntended;
+    private double intendedDirection;
+    private int intendedSpeed;
+    private final double[] intendedTargets = new double[2 * maxRocketsInTheAir];
+    private int intendedRocketCount;
+    private @Getter(AccessLevel.PACKAGE) int scans;
+    private @Getter(AccessLevel.PACKAGE) int fires;
+    private int actions;
+    private @Setter(AccessLevel.PACKAGE) Runnable turnEnd;
+    private final double[] closestEnemy = new double[enemyFields];
+    private @Getter(AccessLevel.PACKAGE) @Setter(AccessLevel.PACKAGE) double[][] buffers = new double[0][];
 
     //private final int maxScanningAngle = 90;
-    private final int maxSpeed = 2;
+    private static final int maxSpeed = 2;
+    private static final int maxRocketsInTheAir = 2;
+    private static final int scanAction = 1;
+    private static final int moveAction = 2;
+    private static final int fireAction = 4;
+    private static final int rocketScanAction = 8;
+
+    /**
+     * The number of values scanAll writes per enemy: its x and y coordinates, its direction and its speed.
+     */
+    public static final int enemyFields = 4;
+    /**
+     * The number of values scanRockets writes per rocket: its x and y coordinates and its direction.
+     */
+    public static final int rocketFields = 3;
     //private final int maxRocketDistance = 250;
 
     public Robot() { }
     /**
-     * Performs a scan within 300 units range of the robot and returns the location of the closest enemy.
-     * @return Returns the distance to the closest enemy in the scanned region. If no enemy is present, returns null;
+     * Performs a scan within the scan range of the arena (500 units by default) around the robot and returns the location of the closest enemy.
+     * It allocates the returned array, which scanAll avoids.
+     * @return The x and y coordinates of the closest enemy in the scanned region, or null if no enemy is present.
      */
     final public double[] scan() {
-        Robot closestRobot = arena.getClosestRobotFrom(this);
-        if(closestRobot == null)
+        if(scanAll(closestEnemy) == 0)
             return null;
-        return new double[]{closestRobot.getXCoordinate(), closestRobot.getYCoordinate()};
+        return new double[]{closestEnemy[0], closestEnemy[1]};
+    }
+
+    /**
+     * Performs a scan within the scan range of the arena around the robot and writes all enemies found into the given buffer, closest first,
+     * as enemyFields values per enemy: x coordinate, y coordinate, direction and speed. The first enemy is the one scan returns.
+     * Nothing is allocated, so the same buffer can be used at every turn, e.g. one returned by getBuffer.
+     * @param enemies The buffer the enemies are written to. If it is too small, only the closest enemies are written.
+     * @return The number of enemies written.
+     */
+    final public int scanAll(double[] enemies) {
+        act(scanAction);
+        scans++;
+        return snapshot.scanRobots(slot, enemies);
+    }
+
+    /**
+     * Performs a scan within the scan range of the arena around the robot and writes all rockets fired by other robots into the given buffer,
+     * closest first, as rocketFields values per rocket: x coordinate, y coordinate and direction.
+     * @param rockets The buffer the rockets are written to. If it is too small, only the closest rockets are written.
+     * @return The number of rockets written.
+     */
+    final public int scanRockets(double[] rockets) {
+        act(rocketScanAction);
+        return snapshot.scanRockets(slot, rockets);
+    }
+
+    /**
+     * Returns an array of the robot that is kept with its contents from turn to turn, so a robot code which runs anew every turn
+     * can reuse its buffers instead of allocating them every turn. The array is only replaced when a longer one is asked for.
+     * @param index The number of the buffer, starting from 0, for robots using several buffers.
+     * @param length The minimum length of the array.
+     * @return The array.
+     */
+    final public double[] getBuffer(int index, int length) {
+        if(index >= buffers.length)
+            buffers = Arrays.copyOf(buffers, index + 1);
+        if(buffers[index] == null || buffers[index].length < length)
+            buffers[index] = buffers[index] == null ? new double[length] : Arrays.copyOf(buffers[index], length);
+        return buffers[index];
     }
 
     /**
      * Starts moving the robot in the given direction(0-359) with the given speed(0 or 1).
+     * The movement takes effect at the end of the turn.
      *
      * @param direction If a value exceeding the maximum angle is provided, the result of (direction mod 360) will be used.
      * @param speed     If 1 is provided, the robot will move. If 0 is provided, the robot will stop moving.
      */
     final public void move(double direction, int speed) {
-        this.direction = direction % 360;
-        this.speed = speed % maxSpeed;
+        act(moveAction);
+        this.moveIntended = true;
+        this.intendedDirection = direction % 360;
+        this.intendedSpeed = speed % maxSpeed;
     }
 
     /**
-     * Fires a missile towards the given location. The missile is not fired if the location is beyond the range or if the cannon is not reloaded yet.
+     * Fires a missile towards the given location. The missile is not fired if the cannon is not reloaded yet.
+     * The missile leaves the cannon at the end of the turn, and explodes when it hits a robot on its way,
+     * or when it reaches the location, its maximum range (250 units by default) or the border of the arena.
      * @param targetX the x coordinate of the target.
      * @param targetY the y coordinate of the target.
      */
     final public void fire(double targetX, double targetY) {
+        act(fireAction);
+        fires++;
         if(!isCannonReloaded())
             return;
 
-        double direction = Utils.angleBetweenPoints(location, new Location(targetX, targetY));
-        Location target = new Location(targetX, targetY);
-        Rocket rocket = new Rocket(direction, location, target, this);
+        this.intendedTargets[2 * intendedRocketCount] = targetX;
+        this.intendedTargets[2 * intendedRocketCount + 1] = targetY;
+        this.intendedRocketCount++;
+    }
 
-        arena.sendRocket(rocket);
+    /**
+     * Notes that the robot takes the given action during the turn. When the robot runs continuously,
+     * taking an action it has already taken during the turn ends the turn, and the robot waits for the next one.
+     * @param action The action, as a bit of the actions field.
+     */
+    private void act(int action) {
+        if(turnEnd != null && (actions & action) != 0)
+            turnEnd.run();
+        actions |= action;
     }
 
     /**
      * @return True if the cannon has finished reloading and can fire another missile. False otherwise.
      */
     final public boolean isCannonReloaded() {
-        return arena.rocketsInTheAirFor(this) < 2;
+        return snapshot.getRocketsInTheAirFor(slot) + intendedRocketCount < maxRocketsInTheAir;
     }
 
     /**
      * @return The current health of the robot. (0-100)
      */
     final public int getHealth() {
-        return health;
+        return snapshot.getRobotHealth(slot);
     }
 
     /**
      * @return The current speed of the robot. (0-10)
      */
     final public int getSpeed() {
-        return speed;
+        return snapshot.getRobotSpeed(slot);
     }
 
     /**
      * @return The current direction of the robot in degrees. (0-359)
      */
     final public double getDirection() {
-        return direction;
+        return snapshot.getRobotDirection(slot);
+    }
+
+    /**
+     * Returns a random number between 0 (inclusive) and 1 (exclusive), like Math.random().
+     * The numbers are drawn from the seed of the battle, so a battle played again with the same seed plays out the same way.
+     * @return a random number between 0 and 1.
+     */
+    final public double random() {
+        return random.nextDouble();
     }
 
     /**
      * @return the x coordinate of the current location.
      */
     final public double getXCoordinate() {
-        return location.getX();
+        return snapshot.getRobotX(slot);
     }
 
     /**
      * @return the y coordinate of the current location.
      */
     final public double getYCoordinate() {
-        return location.getY();
+        return snapshot.getRobotY(slot);
+    }
+
+    /**
+     * Binds the robot to its slot in the storage of the arena.
+     * @param store The storage that holds the state of the robot.
+     * @param slot The slot of the robot.
+     */
+    final void attach(EntityStore store, int slot) {
+        this.store = store;
+        this.slot = slot;
     }
 
     /**
-     * Sets the location of the robot on the arena.
-     * @param location
+     * @return The name of the robot, which is the name of its class unless another name has been set.
      */
-    final public void setLocation(Location location) {
-        this.location = location;
-        if(this.element != null) this.element.setLocation(location.getPoint());
+    final String getName() {
+        return name != null ? name : getClass().getSimpleName();
     }
 
     /**
-     * Sets the graphical component that represents the robot on the Arena GUI.
-     * @param element
+     * Binds the robot to the snapshot it will observe during the next turn and discards the intents and the counters of the previous turn.
+     * @param snapshot The snapshot of the arena.
      */
-    final public void setElement(JPanel element) {
-        this.element = element;
-        if(this.location != null) this.element.setLocation(this.location.getPoint());
+    final void observe(WorldSnapshot snapshot) {
+        this.snapshot = snapshot;
+        this.actions = 0;
+        this.moveIntended = false;
+        this.intendedRocketCount = 0;
+        this.scans = 0;
+        this.fires = 0;
     }
 
-    final public void decreaseHealthBy(int damage) {
-        this.health -= damage;
+    /**
+     * Applies the movement the robot has decided on during the turn.
+     */
+    final void applyMoveIntent() {
+        if(!moveIntended)
+            return;
+        store.setRobotMotion(slot, intendedDirection, intendedSpeed);
+    }
+
+    /**
+     * Sends the rockets the robot has fired during the turn to the arena.
+     * @param arena The arena that will take over the control of the rockets.
+     */
+    final void applyFireIntents(Arena arena) {
+        for(int i = 0; i < intendedRocketCount; i++)
+            arena.sendRocket(this, intendedTargets[2 * i], intendedTargets[2 * i + 1]);
+    }
+
+    /**
+     * @return The x coordinate of the robot in the live state of the arena.
+     */
+    final double getCurrentX() {
+        return store.robotX[slot];
+    }
+
+    /**
+     * @return The y coordinate of the robot in the live state of the arena.
+     */
+    final double getCurrentY() {
+        return store.robotY[slot];
+    }
+
+    /**
+     * @return The x coordinate of the robot before its last move.
+     */
+    final double getPreviousX() {
+        return store.robotPreviousX[slot];
+    }
+
+    /**
+     * @return The y coordinate of the robot before its last move.
+     */
+    final double getPreviousY() {
+        return store.robotPreviousY[slot];
+    }
+
+    /**
+     * @return The health of the robot in the live state of the arena.
+     */
+    final int getCurrentHealth() {
+        return store.robotHealth[slot];
+    }
+
+    /**
+     * @return The speed of the robot in the live state of the arena.
+     */
+    final int getCurrentSpeed() {
+        return store.robotSpeed[slot];
+    }
+
+    /**
+     * @return The direction of the robot in the live state of the arena.
+     */
+    final double getCurrentDirection() {
+        return store.robotDirection[slot];
     }
 
     public void run() {
@@ -0,0 +1,147 @@
+package Arena;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the bytecode of the compiled robots in a directory, so that later runs and other processes can load them
+ * without compiling them again. Every entry is keyed by a hash of the generated Java code, which contains both the robot file
+ * and the wrapper template, so editing either of them leads to a new entry. When the directory grows beyond its size limit,
+ * the least recently used entries are deleted.
+ */
+class RobotClassCache {
+    /**
+     * Should be incremented whenever the bytecode of earlier versions cannot be used anymore, e.g. when the Robot API changes.
+     */
+    private static final int version = 1;
+    private static final String extension = ".robotclass";
+
+    private final Path directory;
+    private final long maxSizeInBytes;
+
+    /**
+     * @param directory The directory where the entries are stored. It is created if it doesn't exist.
+     * @param maxSizeInBytes The maximum total size of the entries.
+     */
+    RobotClassCache(Path directory, long maxSizeInBytes) {
+        this.directory = directory;
+        this.maxSizeInBytes = maxSizeInBytes;
+    }
+
+    /**
+     * Computes the key of the entry for the given Java code.
+     * The version of the Java runtime is included, since the bytecode it produces may not be loadable by older runtimes.
+     * @param javaCode The Java code generated from a robot file.
+     * @return The key of the entry as a hexadecimal string.
+     */
+    static String keyOf(String javaCode) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.format("%d:%s:", version, System.getProperty("java.version")).getBytes(StandardCharsets.UTF_8));
+            byte[] hash = digest.digest(javaCode.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for(byte b : hash)
+                sb.append(String.format("%02x", b));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads the bytecode stored with the given key.
+     * @param key The key of the entry.
+     * @return The bytecode of the classes by their fully qualified names, or null if there is no valid entry for the key.
+     */
+    Map<String, byte[]> get(String key) {
+        Path entry = this.directory.resolve(key + extension);
+        if(!Files.exists(entry))
+            return null;
+        try(DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+            Map<String, byte[]> classes = new HashMap<String, byte[]>();
+            int classCount = input.readInt();
+            for(int i = 0; i < classCount; i++) {
+                String className = input.readUTF();
+                byte[] bytecode = new byte[input.readInt()];
+                input.readFully(bytecode);
+                classes.put(className, bytecode);
+            }
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return classes;
+        } catch (IOException e) {
+            // a corrupted or partially deleted entry is simply compiled again
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Stores the bytecode with the given key and evicts the least recently used entries if the size limit is exceeded.
+     * The entry is written to a temporary file first and then moved into place,
+     * so other processes reading the cache never see a partially written entry.
+     * @param key The key of the entry.
+     * @param classes The bytecode of the classes by their fully qualified names.
+     */
+    void put(String key, Map<String, byte[]> classes) {
+        try {
+            Files.createDirectories(this.directory);
+            Path temporaryFile = Files.createTempFile(this.directory, key, ".tmp");
+            try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+                output.writeInt(classes.size());
+                for(Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                    output.writeUTF(entry.getKey());
+                    output.writeInt(entry.getValue().length);
+                    output.write(entry.getValue());
+                }
+            }
+            Files.move(temporaryFile, this.directory.resolve(key + extension), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            evict();
+        } catch (IOException e) {
+            // the cache is only an optimization, the robot is still loaded
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Deletes all entries of the cache.
+     */
+    void clear() throws IOException {
+        for(Path entry : listEntries())
+            Files.deleteIfExists(entry);
+    }
+
+    /**
+     * Deletes the least recently used entries until the total size is within the limit.
+     */
+    private void evict() throws IOException {
+        List<Path> entries = listEntries();
+        long totalSize = 0;
+        for(Path entry : entries)
+            totalSize += Files.size(entry);
+        if(totalSize <= this.maxSizeInBytes)
+            return;
+
+        entries.sort(Comparator.comparing(entry -> entry.toFile().lastModified()));
+        for(Path entry : entries) {
+            if(totalSize <= this.maxSizeInBytes)
+                break;
+            totalSize -= Files.size(entry);
+            Files.deleteIfExists(entry);
+        }
+    }
+
+    private List<Path> listEntries() throws IOException {
+        if(!Files.isDirectory(this.directory))
+            return new ArrayList<Path>();
+        try(Stream<Path> files = Files.list(this.directory)) {
+            return files.filter(file -> file.toString().endsWith(extension)).collect(Collectors.toList());
+        }
+    }
+}
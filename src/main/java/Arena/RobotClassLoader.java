@@ -0,0 +1,79 @@
+package Arena;
+
+import java.util.Map;
+
+/**
+ * Defines the classes of a single robot, apart from the classes of every other robot and of every other match.
+ * The classes are unloaded, and their metaspace released, once the loader, its classes and the robots created from them are unreachable,
+ * e.g. when the match that used them is over. The classes of the engine, including the Robot API, are taken from the parent loader,
+ * so the robot classes live in a runtime package of their own and can only use the public API of the engine.
+ *
+ * The bytecode is kept by the loader and shared with its copies, so a robot can be defined again for every match
+ * without being compiled or instrumented again.
+ */
+class RobotClassLoader extends ClassLoader {
+    static {
+        registerAsParallelCapable();
+    }
+
+    private final String className;
+    /**
+     * The instrumented bytecode of the robot class and the classes nested in it, by their names. It is never changed.
+     */
+    private final Map<String, byte[]> classes;
+    private final String bytecodeHash;
+
+    /**
+     * @param className The name of the robot class.
+     * @param classes The instrumented bytecode of the robot class and the classes nested in it, by their names.
+     * @param bytecodeHash The hash of the bytecode, see RobotLoader.getBytecodeHash.
+     */
+    RobotClassLoader(String className, Map<String, byte[]> classes, String bytecodeHash) {
+        super(className, Robot.class.getClassLoader());
+        this.className = className;
+        this.classes = classes;
+        this.bytecodeHash = bytecodeHash;
+    }
+
+    /**
+     * @return A new loader of the same classes, which defines them again.
+     */
+    RobotClassLoader copy() {
+        return new RobotClassLoader(this.className, this.classes, this.bytecodeHash);
+    }
+
+    /**
+     * @return The robot class, which is defined on the first call.
+     */
+    Class<? extends Robot> getRobotClass() {
+        try {
+            return loadClass(this.className).asSubclass(Robot.class);
+        } catch(ClassNotFoundException e) {
+            // the bytecode of the robot class is always given
+            throw new IllegalStateException(e);
+        }
+    }
+
+    String getBytecodeHash() {
+        return this.bytecodeHash;
+    }
+
+    /**
+     * Defines the classes of the robot itself, even if the parent loader has a class with the same name, e.g. a robot named after a class of the engine.
+     * Any other class is taken from the parent loader.
+     */
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        byte[] bytecode = this.classes.get(name);
+        if(bytecode == null)
+            return super.loadClass(name, resolve);
+        synchronized(getClassLoadingLock(name)) {
+            Class<?> loadedClass = findLoadedClass(name);
+            if(loadedClass == null)
+                loadedClass = defineClass(name, bytecode, 0, bytecode.length);
+            if(resolve)
+                resolveClass(loadedClass);
+            return loadedClass;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package Arena;
+
+import Arena.Exceptions.RobotNotLoadedException;
+
+import javax.tools.*;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.*;
+
+/**
+ * Compiles the Java code generated from the robot files into bytecode in memory, without touching the file system.
+ * Any number of robots can be compiled in a single compilation task, so that the setup of the compiler is paid only once.
+ */
+class RobotCompiler {
+    private final JavaCompiler compiler;
+
+    RobotCompiler() {
+        this.compiler = ToolProvider.getSystemJavaCompiler();
+    }
+
+    /**
+     * Compiles the given Java code.
+     * @param className The fully qualified name of the class defined by the code.
+     * @param javaCode The Java code to be compiled.
+     * @return The bytecode of every class produced by the compilation, by their fully qualified names.
+     * @throws RobotNotLoadedException If the code does not compile. The compilation errors are printed to the standard error.
+     */
+    Map<String, byte[]> compile(String className, String javaCode) throws RobotNotLoadedException {
+        Map<String, String> errors = new HashMap<String, String>();
+        Map<String, Map<String, byte[]>> compiled = compile(Collections.singletonMap(className, javaCode), errors);
+        if(!compiled.containsKey(className)) {
+            System.err.println(errors.get(className));
+            throw new RobotNotLoadedException(String.format("Failed to compile robot: %s", className));
+        }
+        return compiled.get(className);
+    }
+
+    /**
+     * Compiles the given Java codes together in a single compilation task.
+     * Since the compiler produces no bytecode at all when any of the codes has an error,
+     * the codes without errors are compiled once more in a second task in that case.
+     * @param javaCodes The Java codes to be compiled, by the fully qualified names of the classes they define.
+     * @param errors The map the compilation errors of the failed codes will be added to, by their class names.
+     * @return The bytecode of the successfully compiled codes by their class names. The bytecode of each code contains
+     * every class produced from it, by their fully qualified names.
+     */
+    Map<String, Map<String, byte[]>> compile(Map<String, String> javaCodes, Map<String, String> errors) {
+        Map<String, Map<String, byte[]>> compiled = compileInOneTask(javaCodes, errors);
+        if(errors.isEmpty() || compiled.size() + errors.size() == javaCodes.size())
+            return compiled;
+
+        Map<String, String> validJavaCodes = new LinkedHashMap<String, String>(javaCodes);
+        validJavaCodes.keySet().removeAll(errors.keySet());
+        compiled.putAll(compileInOneTask(validJavaCodes, errors));
+        return compiled;
+    }
+
+    private Map<String, Map<String, byte[]>> compileInOneTask(Map<String, String> javaCodes, Map<String, String> errors) {
+        Map<String, Map<String, ByteArrayOutputStream>> outputs = new HashMap<String, Map<String, ByteArrayOutputStream>>();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        StandardJavaFileManager standardFileManager = this.compiler.getStandardFileManager(diagnostics, null, null);
+        JavaFileManager fileManager = new ForwardingJavaFileManager<StandardJavaFileManager>(standardFileManager) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(JavaFileManager.Location location, String name, JavaFileObject.Kind kind, FileObject sibling) {
+                String sourceClassName = ((RobotSource) sibling).className;
+                return new SimpleJavaFileObject(URI.create(String.format("bytes:///%s%s", name.replace('.', '/'), kind.extension)), kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        ByteArrayOutputStream output = new ByteArrayOutputStream();
+                        outputs.computeIfAbsent(sourceClassName, k -> new HashMap<String, ByteArrayOutputStream>()).put(name, output);
+                        return output;
+                    }
+                };
+            }
+        };
+
+        List<RobotSource> sources = new ArrayList<RobotSource>();
+        for(Map.Entry<String, String> javaCode : javaCodes.entrySet())
+            sources.add(new RobotSource(javaCode.getKey(), javaCode.getValue()));
+        boolean compiled = this.compiler.getTask(null, fileManager, diagnostics, null, null, sources).call();
+
+        if(!compiled) {
+            for(Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if(diagnostic.getKind() == Diagnostic.Kind.ERROR && diagnostic.getSource() instanceof RobotSource)
+                    errors.merge(((RobotSource) diagnostic.getSource()).className, diagnostic.toString(), (a, b) -> a + "\n" + b);
+            }
+        }
+
+        Map<String, Map<String, byte[]>> classes = new HashMap<String, Map<String, byte[]>>();
+        for(Map.Entry<String, Map<String, ByteArrayOutputStream>> source : outputs.entrySet()) {
+            if(errors.containsKey(source.getKey()))
+                continue;
+            Map<String, byte[]> sourceClasses = new HashMap<String, byte[]>();
+            for(Map.Entry<String, ByteArrayOutputStream> output : source.getValue().entrySet())
+                sourceClasses.put(output.getKey(), output.getValue().toByteArray());
+            classes.put(source.getKey(), sourceClasses);
+        }
+        return classes;
+    }
+
+    /**
+     * The in-memory source file of a robot.
+     */
+    private static class RobotSource extends SimpleJavaFileObject {
+        private final String className;
+        private final String javaCode;
+
+        RobotSource(String className, String javaCode) {
+            super(URI.create(String.format("string:///%s%s", className.replace('.', '/'), Kind.SOURCE.extension)), Kind.SOURCE);
+            this.className = className;
+            this.javaCode = javaCode;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return javaCode;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package Arena;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectweb.asm.*;
+
+/**
+ * Inserts the calls to the InstructionBudget into the bytecode of the robots.
+ *
+ * Only the places through which a robot can run for an unbounded time are metered, so the metering costs little:
+ * every backward jump, i.e. every iteration of a loop, is charged the number of instructions of the loop body,
+ * and every method call is charged a single instruction, which bounds recursion.
+ * Every exception handler checks the budget again. The frames of the bytecode are kept as they are,
+ * since nothing is inserted between a jump target and its frame.
+ */
+class RobotInstrumenter {
+    private static final String budget = Type.getInternalName(InstructionBudget.class);
+
+    private RobotInstrumenter() { }
+
+    /**
+     * @param bytecode The bytecode of a class of a robot.
+     * @return The bytecode of the class with the metering inserted.
+     */
+    static byte[] instrument(byte[] bytecode) {
+        ClassReader reader = new ClassReader(bytecode);
+        ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+        reader.accept(new ClassVisitor(Opcodes.ASM9, writer) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                return new MeteringMethodVisitor(super.visitMethod(access, name, descriptor, signature, exceptions));
+            }
+        }, 0);
+        return writer.toByteArray();
+    }
+
+    private static class MeteringMethodVisitor extends MethodVisitor {
+        private final Map<Label, Integer> visitedLabels = new HashMap<Label, Integer>();
+        private final Set<Label> handlers = new HashSet<Label>();
+        private int instructions;
+        private boolean handlerStarted;
+
+        MeteringMethodVisitor(MethodVisitor methodVisitor) {
+            super(Opcodes.ASM9, methodVisitor);
+        }
+
+        @Override
+        public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+            this.handlers.add(handler);
+            super.visitTryCatchBlock(start, end, handler, type);
+        }
+
+        @Override
+        public void visitLabel(Label label) {
+            this.visitedLabels.put(label, this.instructions);
+            if(this.handlers.contains(label))
+                this.handlerStarted = true;
+            super.visitLabel(label);
+        }
+
+        @Override
+        public void visitJumpInsn(int opcode, Label label) {
+            beforeInstruction();
+            Integer target = this.visitedLabels.get(label);
+            if(target != null)
+                charge(this.instructions - target);
+            super.visitJumpInsn(opcode, label);
+        }
+
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+            beforeInstruction();
+            charge(1);
+            super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+        }
+
+        @Override
+        public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle, Object... bootstrapMethodArguments) {
+            beforeInstruction();
+            charge(1);
+            super.visitInvokeDynamicInsn(name, descriptor, bootstrapMethodHandle, bootstrapMethodArguments);
+        }
+
+        @Override
+        public void visitInsn(int opcode) {
+            beforeInstruction();
+            super.visitInsn(opcode);
+        }
+
+        @Override
+        public void visitIntInsn(int opcode, int operand) {
+            beforeInstruction();
+            super.visitIntInsn(opcode, operand);
+        }
+
+        @Override
+        public void visitVarInsn(int opcode, int var) {
+            beforeInstruction();
+            super.visitVarInsn(opcode, var);
+        }
+
+        @Override
+        public void visitTypeInsn(int opcode, String type) {
+            beforeInstruction();
+            super.visitTypeInsn(opcode, type);
+        }
+
+        @Override
+        public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+            beforeInstruction();
+            super.visitFieldInsn(opcode, owner, name, descriptor);
+        }
+
+        @Override
+        public void visitLdcInsn(Object value) {
+            beforeInstruction();
+            super.visitLdcInsn(value);
+        }
+
+        @Override
+        public void visitIincInsn(int var, int increment) {
+            beforeInstruction();
+            super.visitIincInsn(var, increment);
+        }
+
+        @Override
+        public void visitTableSwitchInsn(int min, int max, Label defaultLabel, Label... labels) {
+            beforeInstruction();
+            super.visitTableSwitchInsn(min, max, defaultLabel, labels);
+        }
+
+        @Override
+        public void visitLookupSwitchInsn(Label defaultLabel, int[] keys, Label[] labels) {
+            beforeInstruction();
+            super.visitLookupSwitchInsn(defaultLabel, keys, labels);
+        }
+
+        @Override
+        public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
+            beforeInstruction();
+            super.visitMultiANewArrayInsn(descriptor, numDimensions);
+        }
+
+        /**
+         * Counts the instruction, and checks the budget first if it is the first instruction of an exception handler.
+         */
+        private void beforeInstruction() {
+            this.instructions++;
+            if(this.handlerStarted) {
+                this.handlerStarted = false;
+                super.visitMethodInsn(Opcodes.INVOKESTATIC, budget, "check", "()V", false);
+            }
+        }
+
+        private void charge(int instructions) {
+            super.visitLdcInsn(instructions);
+            super.visitMethodInsn(Opcodes.INVOKESTATIC, budget, "charge", "(I)V", false);
+        }
+    }
+}
@@ -1,44 +1,275 @@
 package Arena;
 
 import Arena.Exceptions.RobotNotLoadedException;
-import net.openhft.compiler.CompilerUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.*;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 
+/**
+ * Compiles the robot files and loads their classes, every robot in a RobotClassLoader of its own,
+ * so that no class of a robot stays loaded once nothing uses it anymore.
+ */
 public class RobotLoader {
+    private final RobotCompiler compiler;
+    private final RobotClassCache cache;
+
+    /**
+     * Creates a robot loader that caches the compiled robots in the directory given by the robotwars.cache.dir system property
+     * (build/robot-cache by default), limited to robotwars.cache.maxSize bytes (64 MB by default).
+     */
+    public RobotLoader() {
+        this(new RobotClassCache(Paths.get(System.getProperty("robotwars.cache.dir", "build/robot-cache")),
+                Long.getLong("robotwars.cache.maxSize", 64L * 1024 * 1024)));
+    }
+
+    RobotLoader(RobotClassCache cache) {
+        this.compiler = new RobotCompiler();
+        this.cache = cache;
+    }
+
     /**
      * Compiles and loads the robot file at the specified destination, written in the custom robot language into its own thread in the memory.
      * @param robotFilePath the path to the file that describes the robot to be loaded.
      * @returns the created Robot object.
      */
     public Robot load(String robotFilePath) throws RobotNotLoadedException {
-        Path path = Paths.get(robotFilePath);
-        String robotName = StringUtils.capitalize(path.getFileName().toString().split("\\.")[0]);
-        try {
-            String robotFile = new Scanner(new File(robotFilePath)).useDelimiter("\\Z").next();
+        return newInstance(loadClass(robotFilePath));
+    }
+
+    /**
+     * Compiles and loads the class of the robot file at the specified destination, written in the custom robot language.
+     * The returned class can be used to create any number of robots without compiling the robot file again.
+     * If the same code has been compiled before, by this or an earlier process, the bytecode is taken from the cache instead of compiling it,
+     * but it is instrumented and defined in a new class loader on every call.
+     * @param robotFilePath the path to the file that describes the robot to be loaded.
+     * @returns the class of the robot.
+     */
+    public Class<? extends Robot> loadClass(String robotFilePath) throws RobotNotLoadedException {
+        return loadClasses(Collections.singletonList(robotFilePath)).get(0);
+    }
+
+    /**
+     * Compiles and loads the classes of all the given robot files at once.
+     * The robot files that are not in the cache yet are compiled together in a single compilation task.
+     * Nothing is kept in memory between two calls: every call reads the robot files and the cache, and instruments the bytecode again.
+     * Robot files with the same name but different contents are compiled apart, and loaded side by side in loaders of their own.
+     * Every call defines new classes, each robot in a RobotClassLoader of its own.
+     * @param robotFilePaths the paths to the files that describe the robots to be loaded.
+     * @returns the classes of the robots, in the same order as the paths.
+     * @throws RobotNotLoadedException If any of the robot files cannot be loaded. The errors are printed for every failed robot,
+     * and the message of the exception lists all of them.
+     */
+    public List<Class<? extends Robot>> loadClasses(List<String> robotFilePaths) throws RobotNotLoadedException {
+        List<String> keys = new ArrayList<String>();
+        Map<String, String> classNames = new HashMap<String, String>();
+        Map<String, Map<String, byte[]>> bytecode = new HashMap<String, Map<String, byte[]>>();
+        Map<String, String> javaCodesToCompile = new LinkedHashMap<String, String>();
+        Map<String, String> robotFilePathsToCompile = new HashMap<String, String>();
+        List<String> failedRobots = new ArrayList<String>();
+
+        for(String robotFilePath : robotFilePaths) {
+            String robotName = getRobotName(robotFilePath);
+            String robotFile;
+            try(Scanner scanner = new Scanner(new File(robotFilePath))) {
+                robotFile = scanner.useDelimiter("\\Z").next();
+            } catch (FileNotFoundException e) {
+                e.printStackTrace();
+                failedRobots.add(robotFilePath);
+                continue;
+            }
 
             String className = String.format("Arena.%s", robotName);
+            String javaCode = wrap(robotName, robotFile);
+            String key = RobotClassCache.keyOf(javaCode);
+            keys.add(key);
+            classNames.put(key, className);
+            if(bytecode.containsKey(key) || javaCodesToCompile.containsKey(key))
+                continue;
+
+            Map<String, byte[]> cachedClasses = this.cache.get(key);
+            if(cachedClasses != null) {
+                bytecode.put(key, cachedClasses);
+            } else {
+                javaCodesToCompile.put(key, javaCode);
+                robotFilePathsToCompile.put(key, robotFilePath);
+            }
+        }
+
+        // robot files with the same name but different contents define the same class, so they are compiled in separate tasks
+        while(!javaCodesToCompile.isEmpty()) {
+            Map<String, String> batch = new LinkedHashMap<String, String>();
+            Map<String, String> batchKeys = new HashMap<String, String>();
+            for(Iterator<Map.Entry<String, String>> it = javaCodesToCompile.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, String> javaCode = it.next();
+                String className = classNames.get(javaCode.getKey());
+                if(batch.containsKey(className))
+                    continue;
+                batch.put(className, javaCode.getValue());
+                batchKeys.put(className, javaCode.getKey());
+                it.remove();
+            }
+
+            Map<String, String> errors = new HashMap<String, String>();
+            Map<String, Map<String, byte[]>> compiled = this.compiler.compile(batch, errors);
+            for(String className : batch.keySet()) {
+                String key = batchKeys.get(className);
+                Map<String, byte[]> classes = compiled.get(className);
+                if(classes == null) {
+                    System.err.println(String.format("Failed to compile robot %s:%n%s", robotFilePathsToCompile.get(key),
+                            errors.getOrDefault(className, "unknown error")));
+                    failedRobots.add(robotFilePathsToCompile.get(key));
+                    continue;
+                }
+                this.cache.put(key, classes);
+                bytecode.put(key, classes);
+            }
+        }
+
+        if(!failedRobots.isEmpty())
+            throw new RobotNotLoadedException(String.format("Failed to load robots: %s", String.join(", ", failedRobots)));
+
+        Map<String, Class<? extends Robot>> loadedClasses = new HashMap<String, Class<? extends Robot>>();
+        for(Map.Entry<String, Map<String, byte[]>> classes : bytecode.entrySet())
+            loadedClasses.put(classes.getKey(), defineClasses(classNames.get(classes.getKey()), classes.getValue()));
+
+        List<Class<? extends Robot>> robotClasses = new ArrayList<Class<? extends Robot>>();
+        for(String key : keys)
+            robotClasses.add(loadedClasses.get(key));
+        return robotClasses;
+    }
+
+    /**
+     * Wraps the content of a robot file into the Java code of a robot class.
+     * @param simpleClassName the name of the robot class, without the package.
+     * @param robotFile the content of the robot file.
+     * @returns the Java code.
+     */
+    static String wrap(String simpleClassName, String robotFile) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package Arena;\n");
+        sb.append(String.format("public class %s extends Robot implements Runnable {\n", simpleClassName));
+        sb.append("    public void run() {\n");
+        sb.append(robotFile);
+        sb.append("    }\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Returns the name of the robot described by a robot file, which is the name of the file, capitalized and without its extension.
+     * The robot class is named after it, and it stays the same when the robot file is edited.
+     * @param robotFilePath the path to the robot file.
+     * @returns the name of the robot.
+     */
+    static String getRobotName(String robotFilePath) {
+        return StringUtils.capitalize(Paths.get(robotFilePath).getFileName().toString().split("\\.")[0]);
+    }
+
+    /**
+     * Returns a name for the robot of a robot file that no other robot has, so robot files with the same name from different folders
+     * keep their own standings, results and metrics. The name of the file is taken as is if it is free, see getRobotName,
+     * and is suffixed by a hash of the path of the file otherwise.
+     * @param robotFilePath the path to the robot file.
+     * @param takenNames the names of the other robots.
+     * @returns the name of the robot.
+     */
+    static String getUniqueRobotName(String robotFilePath, Collection<String> takenNames) {
+        String robotName = getRobotName(robotFilePath);
+        if(!takenNames.contains(robotName))
+            return robotName;
+        return String.format("%s_%08x", robotName, Paths.get(robotFilePath).toAbsolutePath().normalize().toString().hashCode());
+    }
+
+    /**
+     * Returns names for the robots of the given robot files, which are unique among them, see getUniqueRobotName.
+     * A robot file given twice gets the same name both times.
+     * @param robotFilePaths the paths to the robot files.
+     * @returns the names of the robots, in the same order as the paths.
+     */
+    static List<String> getRobotNames(List<String> robotFilePaths) {
+        Map<Path, String> namesByPath = new HashMap<Path, String>();
+        List<String> robotNames = new ArrayList<String>();
+        for(String robotFilePath : robotFilePaths) {
+            Path path = Paths.get(robotFilePath).toAbsolutePath().normalize();
+            String robotName = namesByPath.get(path);
+            if(robotName == null) {
+                robotName = getUniqueRobotName(robotFilePath, namesByPath.values());
+                namesByPath.put(path, robotName);
+            }
+            robotNames.add(robotName);
+        }
+        return robotNames;
+    }
+
+    /**
+     * Defines the compiled classes of a robot in a new RobotClassLoader, metering their instructions.
+     * The bytecode is instrumented here rather than before it is cached, so that changing the metering does not invalidate the cache.
+     * @param className the name of the robot class.
+     * @param classes the bytecode of the robot class and the classes nested in it.
+     * @returns the robot class.
+     */
+    private static Class<? extends Robot> defineClasses(String className, Map<String, byte[]> classes) {
+        Map<String, byte[]> instrumentedClasses = new HashMap<String, byte[]>();
+        for(Map.Entry<String, byte[]> loadedClass : classes.entrySet())
+            instrumentedClasses.put(loadedClass.getKey(), RobotInstrumenter.instrument(loadedClass.getValue()));
+        return new RobotClassLoader(className, instrumentedClasses, hashOf(classes)).getRobotClass();
+    }
 
+    /**
+     * Defines the given robot class again in a RobotClassLoader of its own, from the bytecode it was defined from.
+     * A match that plays with its own classes shares no static state with any other match, and its classes are unloaded once it is over.
+     * @param robotClass the class of the robot, as returned by loadClass.
+     * @returns a new class of the same robot, or the given class if it was not loaded by a RobotLoader, e.g. one of the SyntheticRobots.
+     */
+    static Class<? extends Robot> isolate(Class<? extends Robot> robotClass) {
+        if(!(robotClass.getClassLoader() instanceof RobotClassLoader))
+            return robotClass;
+        return ((RobotClassLoader) robotClass.getClassLoader()).copy().getRobotClass();
+    }
+
+    /**
+     * Returns a hash of the bytecode of the robot class and the classes nested in it, which identifies the behaviour of the robot.
+     * @param robotClass the class of the robot, as returned by loadClass.
+     * @returns the hash as a hexadecimal string, or null if the class was not loaded by a RobotLoader.
+     */
+    static String getBytecodeHash(Class<? extends Robot> robotClass) {
+        if(!(robotClass.getClassLoader() instanceof RobotClassLoader))
+            return null;
+        return ((RobotClassLoader) robotClass.getClassLoader()).getBytecodeHash();
+    }
+
+    private static String hashOf(Map<String, byte[]> classes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for(String className : new TreeSet<String>(classes.keySet()))
+                digest.update(classes.get(className));
             StringBuilder sb = new StringBuilder();
-            sb.append("package Arena;\n");
-            sb.append(String.format("public class %s extends Robot implements Runnable {\n", robotName));
-            sb.append("    public void run() {\n");
-            sb.append(robotFile);
-            sb.append("    }\n");
-            sb.append("}\n");
-            String javaCode = sb.toString();
-
-            Class aClass = CompilerUtils.CACHED_COMPILER.loadFromJava(className, javaCode);
-            return (Robot) aClass.getDeclaredConstructor().newInstance();
-        } catch (ClassNotFoundException | NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException | FileNotFoundException e) {
+            for(byte b : digest.digest())
+                sb.append(String.format("%02x", b));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Creates a new robot from the given robot class.
+     * @param robotClass the class of the robot, as returned by loadClass.
+     * @returns the created Robot object.
+     */
+    public Robot newInstance(Class<? extends Robot> robotClass) throws RobotNotLoadedException {
+        try {
+            return robotClass.getDeclaredConstructor().newInstance();
+        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
             e.printStackTrace();
         }
-        throw new RobotNotLoadedException(String.format("Failed to load robot: %s", robotName));
+        throw new RobotNotLoadedException(String.format("Failed to create robot: %s", robotClass.getSimpleName()));
     }
 
     public static void main(String[] args) {
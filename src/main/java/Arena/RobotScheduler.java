@@ -0,0 +1,131 @@
+package Arena;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import Arena.Exceptions.InstructionBudgetExceededError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the robot codes turn by turn on long-lived worker threads.
+ * Every robot gets its own worker when it enters the arena, which is reused for all of its turns
+ * and reclaimed when the robot leaves the arena.
+ * A robot is kicked out when it exceeds its instruction budget for a turn, which does not depend on the load of the machine.
+ * The turn timeout is only a safety net for robots that block, e.g. by sleeping.
+ */
+class RobotScheduler implements TurnScheduler {
+    private static final Logger log = LoggerFactory.getLogger(RobotScheduler.class);
+
+    private final long turnTimeoutMillis;
+    private final long instructionBudget;
+    private final Map<Robot, ExecutorService> workers;
+    private final Map<Robot, Runnable> turns;
+    private final Map<Robot, ArenaMetrics.RobotMetrics> metrics;
+
+    /**
+     * @param turnTimeoutMillis The time a robot may take to play its turn.
+     * @param instructionBudget The number of instructions a robot may execute during its turn, as metered by the InstructionBudget.
+     */
+    RobotScheduler(long turnTimeoutMillis, long instructionBudget) {
+        this.turnTimeoutMillis = turnTimeoutMillis;
+        this.instructionBudget = instructionBudget;
+        this.workers = new HashMap<Robot, ExecutorService>();
+        this.turns = new HashMap<Robot, Runnable>();
+        this.metrics = new HashMap<Robot, ArenaMetrics.RobotMetrics>();
+    }
+
+    /**
+     * Creates the worker that will run the code of the given robot, and the task that runs a turn of the robot while measuring it.
+     * @param robot The robot to be registered.
+     */
+    @Override
+    public void register(Robot robot) {
+        ArenaMetrics.RobotMetrics robotMetrics = ArenaMetrics.get().getRobotMetrics(robot.getName());
+        this.metrics.put(robot, robotMetrics);
+        this.turns.put(robot, () -> {
+            ((InstructionBudget.MeteredThread) Thread.currentThread()).setBudget(this.instructionBudget);
+            robotMetrics.run(robot);
+        });
+        String name = String.format("robot-%s-%d", robot.getClass().getSimpleName(), robot.getSlot());
+        this.workers.put(robot, Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new InstructionBudget.MeteredThread(runnable, name);
+            // a robot code that ignores interruption must not keep the application alive
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * Runs the codes of the given robots for one turn, all at the same time on their own workers.
+     * All robots share the same deadline, so the turn takes as long as the slowest robot instead of the sum of all of them.
+     * The robots that fail or exceed the turn timeout have their workers reclaimed.
+     * If the thread playing the battle is interrupted, the turn is stopped without blaming any robot, and the interrupt is kept for the arena.
+     * @param robots The robots to be run.
+     * @return The robots that have not finished their turn in time.
+     */
+    @Override
+    public List<Robot> runForOneTurn(List<Robot> robots) {
+        List<Future<?>> futures = new ArrayList<Future<?>>(robots.size());
+        for(Robot robot : robots)
+            futures.add(this.workers.get(robot).submit(this.turns.get(robot)));
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.turnTimeoutMillis);
+        List<Robot> failedRobots = new ArrayList<Robot>();
+        for(int i = 0; i < robots.size(); i++) {
+            Future<?> future = futures.get(i);
+            try {
+                future.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+            } catch(TimeoutException e) {
+                log.warn("Robot {} has exceeded the turn timeout of {} ms", robots.get(i).getName(), this.turnTimeoutMillis);
+                this.metrics.get(robots.get(i)).timedOut();
+                future.cancel(true);
+                retire(robots.get(i));
+                failedRobots.add(robots.get(i));
+            } catch(ExecutionException e) {
+                if(e.getCause() instanceof InstructionBudgetExceededError) {
+                    log.warn("Robot {} has exceeded its instruction budget of {}", robots.get(i).getName(), this.instructionBudget);
+                    this.metrics.get(robots.get(i)).exceededBudget();
+                } else {
+                    e.printStackTrace();
+                }
+                retire(robots.get(i));
+                failedRobots.add(robots.get(i));
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for(int j = i; j < robots.size(); j++)
+                    futures.get(j).cancel(true);
+                break;
+            }
+        }
+        return failedRobots;
+    }
+
+    /**
+     * Shuts down the worker of the given robot. The worker thread is interrupted if it is still running.
+     * @param robot The robot whose worker will be reclaimed.
+     */
+    @Override
+    public void retire(Robot robot) {
+        this.turns.remove(robot);
+        this.metrics.remove(robot);
+        ExecutorService worker = this.workers.remove(robot);
+        if(worker != null)
+            worker.shutdownNow();
+    }
+
+    /**
+     * Shuts down the workers of all the robots. This function should be called once the battle is over.
+     */
+    @Override
+    public void shutdown() {
+        for(ExecutorService worker : this.workers.values())
+            worker.shutdownNow();
+        this.workers.clear();
+        this.turns.clear();
+        this.metrics.clear();
+    }
+}
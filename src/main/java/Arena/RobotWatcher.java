@@ -0,0 +1,158 @@
+package Arena;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
+
+import Arena.Exceptions.RobotNotLoadedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches the folders of the robot files, and loads the robot files that are created or modified on a background thread,
+ * so a long-running process picks up the changes of the robot authors without being restarted.
+ * Only the changed robot files are compiled, and a robot file that fails to compile keeps its previous class.
+ * The new classes are handed to a listener, which decides when to use them, e.g. from the next battle on.
+ *
+ * Editors often write a file in several steps, so the events are collected until the folders have been quiet for debounceMillis.
+ */
+class RobotWatcher implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(RobotWatcher.class);
+    private static final long debounceMillis = 200;
+
+    private final RobotLoader robotLoader = new RobotLoader();
+    private final WatchService watchService;
+    private final BiPredicate<String, Class<? extends Robot>> listener;
+    private final Semaphore changes = new Semaphore(0);
+
+    /**
+     * Starts watching the given folders.
+     * @param folders The folders containing the robot files.
+     * @param listener Called on the background thread with the path and the class of every robot file that has been loaded.
+     * Returns whether the class is new, which is not the case when a robot file has been saved without changing it.
+     */
+    RobotWatcher(Set<Path> folders, BiPredicate<String, Class<? extends Robot>> listener) throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.listener = listener;
+        for(Path folder : folders)
+            folder.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        Thread thread = new Thread(this::watch, "robot-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Waits until the class of at least one robot file has changed since the last call.
+     */
+    void awaitChanges() throws InterruptedException {
+        this.changes.acquire();
+        this.changes.drainPermits();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.watchService.close();
+    }
+
+    private void watch() {
+        try {
+            while(true) {
+                Set<String> changedFiles = new LinkedHashSet<String>();
+                collectChanges(this.watchService.take(), changedFiles);
+                WatchKey key;
+                while((key = this.watchService.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null)
+                    collectChanges(key, changedFiles);
+                if(!changedFiles.isEmpty())
+                    load(new ArrayList<String>(changedFiles));
+            }
+        } catch(ClosedWatchServiceException | InterruptedException e) {
+            // the watcher has been closed
+        }
+    }
+
+    /**
+     * Adds the robot files the events of the given key are about. If events have been lost, all the robot files of the folder are added.
+     */
+    private void collectChanges(WatchKey key, Set<String> changedFiles) {
+        Path folder = (Path) key.watchable();
+        for(WatchEvent<?> event : key.pollEvents()) {
+            if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                File[] files = folder.toFile().listFiles((dir, name) -> name.endsWith(".robot"));
+                if(files != null) {
+                    for(File file : files)
+                        changedFiles.add(file.getPath());
+                }
+                continue;
+            }
+            Path file = folder.resolve((Path) event.context());
+            if(file.getFileName().toString().endsWith(".robot") && Files.isRegularFile(file))
+                changedFiles.add(file.toString());
+        }
+        key.reset();
+    }
+
+    /**
+     * Loads the changed robot files together, and one by one if some of them fail, so the others are loaded anyway.
+     */
+    private void load(List<String> robotFilePaths) {
+        List<Class<? extends Robot>> robotClasses;
+        try {
+            robotClasses = this.robotLoader.loadClasses(robotFilePaths);
+        } catch(RobotNotLoadedException e) {
+            if(robotFilePaths.size() == 1) {
+                log.warn("Robot {} keeps its previous version: {}", robotFilePaths.get(0), e.getMessage());
+                return;
+            }
+            robotClasses = new ArrayList<Class<? extends Robot>>();
+            for(String robotFilePath : robotFilePaths) {
+                try {
+                    robotClasses.add(this.robotLoader.loadClass(robotFilePath));
+                } catch(RobotNotLoadedException robotException) {
+                    log.warn("Robot {} keeps its previous version: {}", robotFilePath, robotException.getMessage());
+                    robotClasses.add(null);
+                }
+            }
+        }
+
+        boolean changed = false;
+        for(int i = 0; i < robotFilePaths.size(); i++) {
+            if(robotClasses.get(i) == null || !this.listener.test(robotFilePaths.get(i), robotClasses.get(i)))
+                continue;
+            log.info("Loaded robot {} as {}", robotFilePaths.get(i), robotClasses.get(i).getSimpleName());
+            changed = true;
+        }
+        if(changed)
+            this.changes.release();
+    }
+
+    /**
+     * @return The folders containing the given robot files.
+     */
+    static Set<Path> getFolders(List<String> robotFilePaths) {
+        Set<Path> folders = new LinkedHashSet<Path>();
+        for(String robotFilePath : robotFilePaths) {
+            Path folder = Paths.get(robotFilePath).toAbsolutePath().getParent();
+            if(folder != null)
+                folders.add(folder);
+        }
+        return Collections.unmodifiableSet(folders);
+    }
+}
@@ -1,44 +1,58 @@
 package Arena;
 
+import lombok.AccessLevel;
 import lombok.Getter;
-import javax.swing.*;
+import lombok.Setter;
 
+/**
+ * A view on a rocket whose state is held in the EntityStore of the arena.
+ * The arena reuses the objects of exploded rockets for the rockets fired later,
+ * so a rocket object must not be kept after the rocket has exploded.
+ */
 @Getter
 class Rocket {
-    private final double direction;
     private final int speed = 2;
-    private Location location;
-    private Location target;
-    private Robot sender;
-    private JPanel element;
-
-    Rocket(
-            double direction,
-            Location location,
-            Location target,
-            Robot sender
-    ) {
-        this.direction = direction;
-        this.location = location;
-        this.target = target;
+    private @Setter(AccessLevel.PACKAGE) Robot sender;
+    private @Getter(AccessLevel.NONE) final EntityStore store;
+    private @Setter(AccessLevel.PACKAGE) int slot;
+
+    Rocket(Robot sender, EntityStore store) {
         this.sender = sender;
+        this.store = store;
+    }
+
+    /**
+     * @return The direction of the rocket in degrees.
+     */
+    double getDirection() {
+        return store.rocketDirection[slot];
+    }
+
+    /**
+     * @return The x coordinate of the current location of the rocket.
+     */
+    double getX() {
+        return store.rocketX[slot];
+    }
+
+    /**
+     * @return The y coordinate of the current location of the rocket.
+     */
+    double getY() {
+        return store.rocketY[slot];
     }
 
     /**
-     * Sets the location of the rocket on the arena.
-     * @param location The new location.
+     * @return The x coordinate of the rocket before its last move.
      */
-    final void setLocation(Location location) {
-        this.location = location;
-        if(this.element != null) this.element.setLocation(location.getPoint());
+    double getPreviousX() {
+        return store.rocketPreviousX[slot];
     }
 
     /**
-     * Sets the graphical component that represents the rocket on the Arena GUI.
-     * @param element The swing GUI element that will be bound to this Rocket object.
+     * @return The y coordinate of the rocket before its last move.
      */
-    final void setElement(JPanel element) {
-        this.element = element;
-        if(this.location != null) this.element.setLocation(this.location.getPoint());
+    double getPreviousY() {
+        return store.rocketPreviousY[slot];
     }
 }
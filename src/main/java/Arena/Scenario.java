@@ -0,0 +1,223 @@
+package Arena;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import Arena.Exceptions.RobotNotLoadedException;
+
+/**
+ * A load test of the engine: a headless arena with the given rules, filled with as many robots as asked for,
+ * which is played for a number of turns while the speed of the turns and the memory taken by the robots are measured.
+ * It is meant to find out how the engine scales with the size of the arena and the number of robots.
+ *
+ * A scenario is described by properties, usually read from a file:
+ * <ul>
+ *     <li>the rules of the arena, named after the fields of ArenaConfig, e.g. width=5000, scanRange=300 or maxTurns=1000,</li>
+ *     <li>robots, a comma separated list of robots and how many of each are spawned, e.g. robots=wanderer:5000, path/to/Shooter.robot:100.
+ *     A robot is either the name of one of the SyntheticRobots or a robot file, which is compiled once for all its copies,</li>
+ *     <li>turns, the number of turns measured (100 by default), after warmupTurns turns that are not measured (10 by default),</li>
+ *     <li>seed, the seed of the battle (0 by default), and continuous=true to run the robots continuously, see Arena.ExecutionMode.</li>
+ * </ul>
+ */
+class Scenario {
+    private static final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    private final RobotLoader robotLoader = new RobotLoader();
+    private final ArenaConfig config;
+    /**
+     * The number of robots of every synthetic robot name or robot file, in the order they are spawned.
+     */
+    private final Map<String, Integer> robots = new LinkedHashMap<String, Integer>();
+    private final int turns;
+    private final int warmupTurns;
+    private final long seed;
+    private final Arena.ExecutionMode executionMode;
+
+    /**
+     * @param properties The description of the scenario, see above.
+     * @throws IllegalArgumentException If a property has an invalid value.
+     */
+    Scenario(Properties properties) {
+        this.config = ArenaConfig.defaults.withProperties(properties);
+        for(String entry : properties.getProperty("robots", "skirmisher:100").split(",")) {
+            int separator = entry.lastIndexOf(':');
+            String robot = (separator < 0 ? entry : entry.substring(0, separator)).trim();
+            int count = separator < 0 ? 1 : Integer.parseInt(entry.substring(separator + 1).trim());
+            if(robot.isEmpty() || count < 0)
+                throw new IllegalArgumentException(String.format("Invalid robots entry: %s", entry));
+            if(!robot.endsWith(".robot") && !SyntheticRobots.byName.containsKey(robot.toLowerCase()))
+                throw new IllegalArgumentException(String.format("Unknown synthetic robot %s, expected one of %s or a robot file",
+                        robot, SyntheticRobots.byName.keySet()));
+            this.robots.merge(robot, count, Integer::sum);
+        }
+        this.turns = Integer.parseInt(properties.getProperty("turns", "100").trim());
+        this.warmupTurns = Integer.parseInt(properties.getProperty("warmupTurns", "10").trim());
+        this.seed = Long.parseLong(properties.getProperty("seed", "0").trim());
+        this.executionMode = Boolean.parseBoolean(properties.getProperty("continuous", "false").trim())
+                ? Arena.ExecutionMode.CONTINUOUS : Arena.ExecutionMode.TURNS;
+    }
+
+    /**
+     * @return The classes of the robots of the scenario, in the order they are spawned. The robot files are compiled together.
+     * @throws RobotNotLoadedException If one of the robot files cannot be loaded.
+     */
+    List<Class<? extends Robot>> loadRobotClasses() throws RobotNotLoadedException {
+        List<String> robotFilePaths = new ArrayList<String>();
+        for(String robot : this.robots.keySet()) {
+            if(robot.endsWith(".robot"))
+                robotFilePaths.add(robot);
+        }
+        List<Class<? extends Robot>> robotFileClasses = this.robotLoader.loadClasses(robotFilePaths);
+
+        List<Class<? extends Robot>> robotClasses = new ArrayList<Class<? extends Robot>>();
+        int robotFile = 0;
+        for(String robot : this.robots.keySet())
+            robotClasses.add(robot.endsWith(".robot") ? robotFileClasses.get(robotFile++) : SyntheticRobots.byName.get(robot.toLowerCase()));
+        return robotClasses;
+    }
+
+    /**
+     * Creates the arena of the scenario and spawns its robots at random locations.
+     * @param robotClasses The classes returned by loadRobotClasses.
+     * @return The arena, which must be shut down after use.
+     */
+    Arena createArena(List<Class<? extends Robot>> robotClasses) throws RobotNotLoadedException {
+        Arena arena = new Arena(this.seed, this.config, this.executionMode);
+        int robotClass = 0;
+        for(int count : this.robots.values()) {
+            for(int i = 0; i < count; i++)
+                arena.addRobot(this.robotLoader.newInstance(robotClasses.get(robotClass)));
+            robotClass++;
+        }
+        return arena;
+    }
+
+    /**
+     * Spawns the robots and plays the turns of the scenario, measuring the heap taken by the robots and the speed of the turns.
+     * @return The measurements.
+     */
+    Report run() throws RobotNotLoadedException {
+        ArenaMetrics metrics = ArenaMetrics.get();
+        List<Class<? extends Robot>> robotClasses = loadRobotClasses();
+        long heapBefore = getUsedHeap();
+        Arena arena = createArena(robotClasses);
+        Report report = new Report();
+        report.robots = arena.getRobots().size();
+        report.heapPerRobot = (double) (getUsedHeap() - heapBefore) / Math.max(1, report.robots);
+        try {
+            MatchResult result = arena.playTurns(this.warmupTurns);
+            report.threads = ManagementFactory.getThreadMXBean().getThreadCount();
+            metrics.reset();
+            int[] entities = new int[2];
+            arena.addListener(new ArenaListener() {
+                @Override
+                public void turnEnded(int turn, List<Robot> robots, List<Rocket> rockets) {
+                    entities[0] += robots.size();
+                    entities[1] += rockets.size();
+                }
+            });
+            int firstTurn = arena.getTurn();
+            long start = System.nanoTime();
+            if(result == null)
+                result = arena.playTurns(this.turns);
+            report.elapsedNanos = System.nanoTime() - start;
+            report.turns = arena.getTurn() - firstTurn;
+            report.robotTurns = entities[0];
+            report.rocketTurns = entities[1];
+            report.heapAtEnd = getUsedHeap() - heapBefore;
+            report.ended = result != null;
+            report.phases = metrics.getPhases();
+        } finally {
+            arena.shutdown();
+        }
+        return report;
+    }
+
+    /**
+     * @return The bytes of the heap taken by live objects, as far as garbage collections can tell.
+     * Collections are repeated until the used heap stops shrinking, since a single one may leave garbage behind.
+     */
+    private static long getUsedHeap() {
+        long used = Long.MAX_VALUE;
+        for(int i = 0; i < 10; i++) {
+            memory.gc();
+            long previous = used;
+            used = memory.getHeapMemoryUsage().getUsed();
+            if(used >= previous)
+                break;
+        }
+        return used;
+    }
+
+    /**
+     * The measurements of a run of a scenario.
+     */
+    static class Report {
+        private int robots;
+        private double heapPerRobot;
+        /**
+         * The heap taken by the arena after the measured turns, including the rockets in the air.
+         */
+        private long heapAtEnd;
+        private int threads;
+        private int turns;
+        private long robotTurns;
+        private long rocketTurns;
+        private long elapsedNanos;
+        private boolean ended;
+        private List<ArenaMetricsMXBean.PhaseStatistics> phases;
+
+        @Override
+        public String toString() {
+            double seconds = this.elapsedNanos / 1e9;
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%d robots spawned, %.0f bytes of heap per robot, %d threads after the warmup%n", this.robots, this.heapPerRobot, this.threads));
+            sb.append(String.format("%d turns played in %.0f ms%s: %.1f turns/s, %.0f robot turns/s%n", this.turns, seconds * 1e3,
+                    this.ended ? " until the battle ended" : "", this.turns / seconds, this.robotTurns / seconds));
+            sb.append(String.format("%.0f robots and %.0f rockets per turn on average, %.1f MB of heap taken by the arena at the end",
+                    (double) this.robotTurns / Math.max(1, this.turns), (double) this.rocketTurns / Math.max(1, this.turns), this.heapAtEnd / 1e6));
+            for(ArenaMetricsMXBean.PhaseStatistics phase : this.phases) {
+                sb.append(String.format("%n  phase %-10s mean %10.1f us  p99 %10.1f us  max %10.1f us", phase.getPhase(),
+                        phase.getMeanMicros(), phase.getP99Micros(), phase.getMaxMicros()));
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Entry point of the load tests.
+     * Usage: [scenario file] [name=value...]
+     * The properties given as arguments override those of the file, e.g. robots=wanderer:20000 width=20000 height=20000.
+     */
+    public static void main(String[] args) throws IOException, RobotNotLoadedException {
+        Properties properties = new Properties();
+        for(String arg : args) {
+            int separator = arg.indexOf('=');
+            if(separator > 0) {
+                properties.setProperty(arg.substring(0, separator), arg.substring(separator + 1));
+            } else {
+                Properties file = new Properties();
+                try(Reader reader = Files.newBufferedReader(Paths.get(arg), StandardCharsets.UTF_8)) {
+                    file.load(reader);
+                }
+                for(String name : file.stringPropertyNames())
+                    properties.putIfAbsent(name, file.getProperty(name));
+            }
+        }
+
+        Scenario scenario = new Scenario(properties);
+        System.out.println(String.format("Scenario: %dx%d arena, scan range %d, robots %s, seed %d", scenario.config.getWidth(),
+                scenario.config.getHeight(), scenario.config.getScanRange(), scenario.robots, scenario.seed));
+        System.out.println(scenario.run());
+    }
+}
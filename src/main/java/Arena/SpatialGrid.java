@@ -0,0 +1,216 @@
+package Arena;
+
+import java.util.Arrays;
+
+/**
+ * A uniform grid that divides the arena into square cells and keeps track of which entities are in which cell.
+ * It is used to find the entities around a location without checking every entity in the arena.
+ * The entities are identified by their slots in the EntityStore, and their coordinates are read from the given arrays.
+ */
+class SpatialGrid {
+    private final int cellSize;
+    private final int columns;
+    private final int rows;
+    private final int[][] cells;
+    private final int[] cellSizes;
+    /**
+     * Whether the cells belong to this grid, or are shared with the grid it has been shared from and must be copied before they are changed.
+     */
+    private final boolean[] ownedCells;
+    private int[] cellOf = new int[0];
+
+    /**
+     * @param width The width of the arena.
+     * @param height The height of the arena.
+     * @param cellSize The length of the side of a cell.
+     */
+    SpatialGrid(int width, int height, int cellSize) {
+        this.cellSize = cellSize;
+        this.columns = width / cellSize + 1;
+        this.rows = height / cellSize + 1;
+        this.cells = new int[this.columns * this.rows][4];
+        this.cellSizes = new int[this.columns * this.rows];
+        this.ownedCells = new boolean[this.columns * this.rows];
+        Arrays.fill(this.ownedCells, true);
+    }
+
+    private SpatialGrid(SpatialGrid grid, boolean shareCells) {
+        this.cellSize = grid.cellSize;
+        this.columns = grid.columns;
+        this.rows = grid.rows;
+        this.cells = grid.cells.clone();
+        this.cellSizes = grid.cellSizes.clone();
+        this.cellOf = grid.cellOf.clone();
+        this.ownedCells = new boolean[this.cells.length];
+        if(!shareCells) {
+            for(int cell = 0; cell < this.cells.length; cell++)
+                ownCell(cell);
+        }
+    }
+
+    /**
+     * @return A copy of this grid, with the entities in the same order in every cell, so the queries yield the same results.
+     */
+    SpatialGrid copy() {
+        return new SpatialGrid(this, false);
+    }
+
+    /**
+     * Creates a copy of this grid that shares the cells of this grid, and only copies a cell when an entity enters or leaves it.
+     * This grid must not be changed anymore, which is the case for the grid of an ArenaCheckpoint.
+     * @return The shared grid.
+     */
+    SpatialGrid share() {
+        return new SpatialGrid(this, true);
+    }
+
+    /**
+     * Adds the entity at the given location.
+     * @param id The slot of the entity.
+     */
+    void insert(int id, double x, double y) {
+        if(id >= this.cellOf.length)
+            this.cellOf = Arrays.copyOf(this.cellOf, Math.max(id + 1, this.cellOf.length * 2));
+        int cell = cellOf(x, y);
+        this.cellOf[id] = cell;
+        addToCell(cell, id);
+    }
+
+    /**
+     * Removes the entity from the grid.
+     * @param id The slot of the entity.
+     */
+    void remove(int id) {
+        removeFromCell(this.cellOf[id], id);
+        this.cellOf[id] = -1;
+    }
+
+    /**
+     * Moves the entity to the cell of its new location. This function should be called every time the entity moves.
+     * @param id The slot of the entity.
+     */
+    void update(int id, double x, double y) {
+        int previousCell = this.cellOf[id];
+        int cell = cellOf(x, y);
+        if(previousCell != cell && previousCell >= 0) {
+            removeFromCell(previousCell, id);
+            addToCell(cell, id);
+            this.cellOf[id] = cell;
+        }
+    }
+
+    /**
+     * Finds the closest entity to the given location within the radius.
+     * The cells are visited in rings around the location, stopping as soon as no closer entity can be found.
+     * @param x The x coordinate of the location from where the search is performed.
+     * @param y The y coordinate of the location from where the search is performed.
+     * @param radius The maximum distance of the entity from the location.
+     * @param excluded An entity that is skipped, usually the one performing the search.
+     * @param xs The x coordinates of the entities, indexed by their slots.
+     * @param ys The y coordinates of the entities, indexed by their slots.
+     * @return The slot of the closest entity, or -1 if there is none within the radius.
+     */
+    int getClosestWithin(double x, double y, double radius, int excluded, double[] xs, double[] ys) {
+        int column = columnOf(x);
+        int row = rowOf(y);
+        int maxRing = Math.max(this.columns, this.rows);
+
+        int closest = -1;
+        double closestDistance = radius;
+        for(int ring = 0; ring <= maxRing; ring++) {
+            if((ring - 1) * (double) this.cellSize > closestDistance)
+                break;
+            for(int r = row - ring; r <= row + ring; r++) {
+                if(r < 0 || r >= this.rows)
+                    continue;
+                boolean edgeRow = r == row - ring || r == row + ring;
+                for(int c = column - ring; c <= column + ring; c += edgeRow ? 1 : 2 * ring) {
+                    if(c < 0 || c >= this.columns)
+                        continue;
+                    int cell = r * this.columns + c;
+                    int[] entities = this.cells[cell];
+                    for(int i = 0; i < this.cellSizes[cell]; i++) {
+                        int entity = entities[i];
+                        if(entity == excluded)
+                            continue;
+                        double distance = Utils.getDistanceBetween(x, y, xs[entity], ys[entity]);
+                        if(distance <= closestDistance && (closest < 0 || distance < closestDistance)) {
+                            closest = entity;
+                            closestDistance = distance;
+                        }
+                    }
+                }
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * Collects all the entities within the radius of the given location.
+     * @param x The x coordinate of the center of the searched area.
+     * @param y The y coordinate of the center of the searched area.
+     * @param radius The radius of the searched area.
+     * @param xs The x coordinates of the entities, indexed by their slots.
+     * @param ys The y coordinates of the entities, indexed by their slots.
+     * @param result The array the slots of the found entities will be written to. It must be large enough to hold all entities.
+     * @return The number of entities found.
+     */
+    int collectWithin(double x, double y, double radius, double[] xs, double[] ys, int[] result) {
+        int minColumn = columnOf(x - radius);
+        int maxColumn = columnOf(x + radius);
+        int minRow = rowOf(y - radius);
+        int maxRow = rowOf(y + radius);
+        int count = 0;
+        for(int r = minRow; r <= maxRow; r++) {
+            for(int c = minColumn; c <= maxColumn; c++) {
+                int cell = r * this.columns + c;
+                int[] entities = this.cells[cell];
+                for(int i = 0; i < this.cellSizes[cell]; i++) {
+                    int entity = entities[i];
+                    if(Utils.getDistanceBetween(x, y, xs[entity], ys[entity]) <= radius)
+                        result[count++] = entity;
+                }
+            }
+        }
+        return count;
+    }
+
+    private void addToCell(int cell, int id) {
+        ownCell(cell);
+        if(this.cellSizes[cell] == this.cells[cell].length)
+            this.cells[cell] = Arrays.copyOf(this.cells[cell], this.cells[cell].length * 2);
+        this.cells[cell][this.cellSizes[cell]++] = id;
+    }
+
+    private void removeFromCell(int cell, int id) {
+        ownCell(cell);
+        int[] entities = this.cells[cell];
+        for(int i = 0; i < this.cellSizes[cell]; i++) {
+            if(entities[i] == id) {
+                // keep the order of the remaining entities, so the queries stay deterministic
+                System.arraycopy(entities, i + 1, entities, i, this.cellSizes[cell] - i - 1);
+                this.cellSizes[cell]--;
+                return;
+            }
+        }
+    }
+
+    private void ownCell(int cell) {
+        if(this.ownedCells[cell])
+            return;
+        this.cells[cell] = this.cells[cell].clone();
+        this.ownedCells[cell] = true;
+    }
+
+    private int cellOf(double x, double y) {
+        return rowOf(y) * this.columns + columnOf(x);
+    }
+
+    private int columnOf(double x) {
+        return Math.max(Math.min((int) (x / this.cellSize), this.columns - 1), 0);
+    }
+
+    private int rowOf(double y) {
+        return Math.max(Math.min((int) (y / this.cellSize), this.rows - 1), 0);
+    }
+}
@@ -0,0 +1,63 @@
+package Arena;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Watches a battle streamed live by a SpectatorServer, in a process of its own.
+ * The frames are decoded by a ReplayPlayer and shown by the ArenaGUI as they arrive, so the battle is shown at the pace it is played.
+ */
+class SpectatorClient {
+    private final DataInputStream in;
+    private final ReplayPlayer player;
+
+    /**
+     * Reads the header of the stream.
+     * @param channel The connection to the server.
+     * @param source The address of the server, for the error messages.
+     */
+    SpectatorClient(SocketChannel channel, String source) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        this.player = new ReplayPlayer(ByteBuffer.wrap(readMessage()), source);
+    }
+
+    /**
+     * Shows the frames as they arrive, until the battle ends or the server closes the connection.
+     * @param listener The listener that displays the battle.
+     * @return False if the connection has been closed before the battle ended, true otherwise.
+     */
+    boolean watch(ArenaListener listener) throws IOException {
+        try {
+            while(this.player.playFrame(ByteBuffer.wrap(readMessage()), listener)) { }
+            return true;
+        } catch(EOFException e) {
+            return false;
+        }
+    }
+
+    private byte[] readMessage() throws IOException {
+        byte[] message = new byte[this.in.readInt()];
+        this.in.readFully(message);
+        return message;
+    }
+
+    /**
+     * Entry point of a spectator.
+     * Usage: port | unix:path
+     * The battle is watched from the next keyframe on, and the window stays open after the battle has ended.
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length != 1)
+            throw new IllegalArgumentException("Usage: port | unix:path");
+        try(SocketChannel channel = SocketChannel.open(SpectatorServer.parseAddress(args[0]))) {
+            SpectatorClient client = new SpectatorClient(channel, args[0]);
+            if(!client.watch(new ArenaGUI(0)))
+                System.out.println("The battle is not streamed anymore");
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package Arena;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams a battle live to any number of SpectatorClients over a local TCP or Unix domain socket,
+ * so the battle can be watched without a window in the process that plays it.
+ * The stream is a replay in the ReplayFormat, except that the header is prefixed by its length like the frames,
+ * and that a spectator may miss frames, in which case it resumes at a keyframe.
+ *
+ * The frames are encoded once on the thread that plays the battle, and queued for every spectator, whose own thread sends them.
+ * The queues are bounded, so a slow spectator never slows the battle down: when its queue is full, the frames it has not
+ * received yet are dropped, and it skips the frames up to the next keyframe, from which it catches up with the live battle.
+ * Spectators that connect during a battle receive the header and then start at the next keyframe too,
+ * which are sent every keyframeInterval turns, more often than in replay files.
+ */
+class SpectatorServer extends ReplayEncoder implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(SpectatorServer.class);
+    /**
+     * Half a second at the 60 turns per second at which battles are watched.
+     */
+    private static final int keyframeInterval = 30;
+    private static final int queueCapacity = 120;
+    private static final long drainMillis = 2000;
+
+    private final ServerSocketChannel server;
+    private final SocketAddress address;
+    private final List<Spectator> spectators = new CopyOnWriteArrayList<Spectator>();
+    private volatile byte[] header;
+    private int spectatorCount;
+
+    /**
+     * Starts listening for spectators.
+     * @param address A port on the loopback interface, or unix: followed by the path of a Unix domain socket, see parseAddress.
+     * @param width The width of the arena.
+     * @param height The height of the arena.
+     */
+    SpectatorServer(String address, int width, int height) throws IOException {
+        super(width, height, keyframeInterval);
+        this.address = parseAddress(address);
+        if(this.address instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) this.address).getPath());
+            this.server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            this.server = ServerSocketChannel.open();
+        }
+        this.server.bind(this.address);
+        log.info("Waiting for spectators on {}", this.server.getLocalAddress());
+
+        Thread acceptor = new Thread(this::acceptSpectators, "spectator-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * @param address A port, which is opened on the loopback interface, or unix: followed by the path of a Unix domain socket.
+     */
+    static SocketAddress parseAddress(String address) {
+        if(address.startsWith("unix:"))
+            return UnixDomainSocketAddress.of(Paths.get(address.substring("unix:".length())));
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address));
+    }
+
+    private void acceptSpectators() {
+        while(this.server.isOpen()) {
+            try {
+                Spectator spectator = new Spectator(this.server.accept(), ++this.spectatorCount);
+                this.spectators.add(spectator);
+                byte[] header = this.header;
+                if(header != null)
+                    spectator.offerHeader(header);
+                spectator.start();
+            } catch(ClosedChannelException e) {
+                // the server has been closed
+            } catch(IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    void writeHeader(ByteBuffer header) {
+        this.header = toMessage(header);
+        for(Spectator spectator : this.spectators)
+            spectator.offerHeader(this.header);
+    }
+
+    @Override
+    void writeFrame(ByteBuffer frame, byte type) {
+        if(this.spectators.isEmpty())
+            return;
+        byte[] message = toMessage(frame);
+        for(Spectator spectator : this.spectators)
+            spectator.offer(message, type);
+    }
+
+    /**
+     * @return The given data prefixed by its length, in an array that is shared by all the spectators and never changed.
+     */
+    private static byte[] toMessage(ByteBuffer data) {
+        ByteBuffer message = ByteBuffer.allocate(4 + data.remaining());
+        message.putInt(data.remaining());
+        message.put(data);
+        return message.array();
+    }
+
+    /**
+     * Stops accepting spectators, and gives the connected ones a moment to receive the frames queued for them, e.g. the end of the battle.
+     */
+    @Override
+    public void close() throws IOException {
+        this.server.close();
+        if(this.address instanceof UnixDomainSocketAddress)
+            Files.deleteIfExists(((UnixDomainSocketAddress) this.address).getPath());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainMillis);
+        for(Spectator spectator : this.spectators)
+            spectator.close(deadline);
+    }
+
+    /**
+     * A connected spectator, with the queue of the frames it has not received yet.
+     * The queue is only locked to add or take a frame, never while sending one,
+     * so the thread that plays the battle never waits for the connection of a spectator.
+     */
+    private class Spectator {
+        private final SocketChannel channel;
+        private final Thread thread;
+        private final ArrayDeque<byte[]> queue = new ArrayDeque<byte[]>();
+        private byte[] header;
+        private boolean headerOffered;
+        private boolean waitingForKeyframe = true;
+        private boolean closing;
+        private long droppedFrames;
+
+        Spectator(SocketChannel channel, int number) {
+            this.channel = channel;
+            this.thread = new Thread(this::send, String.format("spectator-%d", number));
+            this.thread.setDaemon(true);
+        }
+
+        void start() {
+            this.thread.start();
+        }
+
+        /**
+         * Queues the header, which is sent before any frame. The header may be offered both by the thread that accepts the spectator
+         * and by the thread that plays the battle, but is only sent once.
+         */
+        synchronized void offerHeader(byte[] header) {
+            if(this.headerOffered)
+                return;
+            this.headerOffered = true;
+            this.header = header;
+            notifyAll();
+        }
+
+        /**
+         * Queues a frame, unless the spectator is waiting for a keyframe and the frame is a delta frame.
+         * If the queue is full, the frames in it are dropped and the spectator waits for the next keyframe.
+         * @param type The type of the frame.
+         */
+        synchronized void offer(byte[] frame, byte type) {
+            if(this.closing)
+                return;
+            if(type == ReplayFormat.deltaFrame && this.waitingForKeyframe) {
+                this.droppedFrames++;
+                return;
+            }
+            if(this.queue.size() >= queueCapacity) {
+                this.droppedFrames += this.queue.size();
+                this.queue.clear();
+                if(type == ReplayFormat.deltaFrame) {
+                    this.waitingForKeyframe = true;
+                    this.droppedFrames++;
+                    return;
+                }
+            }
+            this.waitingForKeyframe = false;
+            this.queue.add(frame);
+            notifyAll();
+        }
+
+        /**
+         * Sends the header and the queued frames until the connection is closed, by the spectator or by close.
+         */
+        private void send() {
+            try(SocketChannel channel = this.channel) {
+                while(true) {
+                    byte[] message;
+                    synchronized(this) {
+                        while(this.header == null && this.queue.isEmpty() && !this.closing)
+                            wait();
+                        if(this.header != null) {
+                            message = this.header;
+                            this.header = null;
+                        } else {
+                            message = this.queue.poll();
+                        }
+                    }
+                    if(message == null)
+                        break;
+                    ByteBuffer buffer = ByteBuffer.wrap(message);
+                    while(buffer.hasRemaining())
+                        channel.write(buffer);
+                }
+            } catch(IOException e) {
+                log.info("Spectator disconnected: {}", e.toString());
+            } catch(InterruptedException e) {
+                e.printStackTrace();
+            }
+            synchronized(this) {
+                this.closing = true;
+                this.queue.clear();
+            }
+            spectators.remove(this);
+            if(this.droppedFrames > 0)
+                log.info("A spectator has been too slow to receive {} frames", this.droppedFrames);
+        }
+
+        /**
+         * Lets the spectator receive the frames queued for it until the deadline, and then closes its connection.
+         */
+        void close(long deadline) {
+            synchronized(this) {
+                this.closing = true;
+                notifyAll();
+            }
+            try {
+                this.thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            } catch(InterruptedException e) {
+                e.printStackTrace();
+            }
+            try {
+                this.channel.close();
+            } catch(IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
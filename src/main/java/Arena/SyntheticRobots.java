@@ -0,0 +1,69 @@
+package Arena;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Robots written in Java with simple behaviours, which load-test scenarios and benchmarks spawn by the thousands
+ * without compiling robot files. Each of them exercises a different part of the engine.
+ */
+final class SyntheticRobots {
+    /**
+     * The synthetic robots by the names they are given in scenarios.
+     */
+    static final Map<String, Class<? extends Robot>> byName;
+
+    static {
+        Map<String, Class<? extends Robot>> robots = new LinkedHashMap<String, Class<? extends Robot>>();
+        for(Class<? extends Robot> robotClass : Arrays.asList(Idle.class, Wanderer.class, Turret.class, Skirmisher.class))
+            robots.put(robotClass.getSimpleName().toLowerCase(), robotClass);
+        byName = Collections.unmodifiableMap(robots);
+    }
+
+    private SyntheticRobots() { }
+
+    /**
+     * Does nothing, which measures what the engine costs per robot without any robot code.
+     */
+    static class Idle extends Robot {
+    }
+
+    /**
+     * Wanders around in random directions, which keeps the spatial grid busy.
+     */
+    static class Wanderer extends Robot {
+        @Override
+        public void run() {
+            move(random() * 360, 1);
+        }
+    }
+
+    /**
+     * Stands still, scans for all enemies around it and fires at the closest one whenever it can, which keeps the rockets busy.
+     */
+    static class Turret extends Robot {
+        private final double[] enemies = new double[8 * enemyFields];
+
+        @Override
+        public void run() {
+            if(scanAll(enemies) > 0 && isCannonReloaded())
+                fire(enemies[0], enemies[1]);
+        }
+    }
+
+    /**
+     * Does a bit of everything every turn: it scans, fires at the closest enemy whenever it can and wanders around in random directions.
+     */
+    static class Skirmisher extends Robot {
+        private final double[] enemies = new double[enemyFields];
+
+        @Override
+        public void run() {
+            if(scanAll(enemies) > 0 && isCannonReloaded())
+                fire(enemies[0], enemies[1]);
+            move(random() * 360, 1);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package Arena;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces a loop to a fixed number of ticks per second, such as the turns of a battle that is watched.
+ * The ticks are scheduled at fixed times from the first one rather than after one another,
+ * so the time spent in a tick does not slow the loop down. A loop that falls far behind does not race to catch up,
+ * its schedule is restarted instead.
+ */
+class TickClock {
+    private static final int maxTicksBehind = 5;
+
+    private final long tickNanos;
+    private long nextTick;
+
+    /**
+     * @param ticksPerSecond The number of ticks per second, or 0 to run as fast as possible.
+     */
+    TickClock(double ticksPerSecond) {
+        this.tickNanos = ticksPerSecond > 0 ? (long) (1_000_000_000 / ticksPerSecond) : 0;
+        this.nextTick = System.nanoTime();
+    }
+
+    /**
+     * Waits until the next tick is due. The first tick is due right away.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    void awaitTick() throws InterruptedException {
+        if(this.tickNanos == 0)
+            return;
+        if(System.nanoTime() - this.nextTick > maxTicksBehind * this.tickNanos)
+            this.nextTick = System.nanoTime();
+        long wait;
+        while((wait = this.nextTick - System.nanoTime()) > 0)
+            TimeUnit.NANOSECONDS.sleep(wait);
+        this.nextTick += this.tickNanos;
+    }
+}
@@ -0,0 +1,463 @@
+package Arena;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import Arena.Exceptions.NoRobotFilesFoundException;
+import Arena.Exceptions.RobotNotLoadedException;
+import lombok.Getter;
+
+/**
+ * Plays every combination of the given robots against each other in headless arenas running in parallel,
+ * and ranks the robots by their results.
+ * Every robot file is compiled once, and its class is shared by all the battles the robot takes part in.
+ * The class of a robot can be replaced while the tournament is played, e.g. by a RobotWatcher when its file is edited:
+ * every battle takes the classes of its robots when it starts, so the battles in progress finish with the previous class.
+ */
+class Tournament {
+    private static final int initialRating = 1500;
+    private static final int ratingFactor = 32;
+
+    private final RobotLoader robotLoader;
+    /**
+     * The robot files, the names of their robots and their classes, in the order of their indexes. The lists are replaced rather than changed,
+     * so a battle can keep using the lists it started with. The names are unique within the tournament, see RobotLoader.getUniqueRobotName.
+     */
+    private volatile List<String> robotFilePaths;
+    private volatile List<String> robotNames;
+    private volatile List<Class<? extends Robot>> robotClasses;
+    private final int robotsPerMatch;
+    private final int rounds;
+    private final Path replayFolder;
+    private final long seed;
+    private final MatchResultCache resultCache;
+    private final MatchResultStore resultStore;
+    private final Arena.ExecutionMode executionMode;
+    private final AtomicInteger reusedResults = new AtomicInteger();
+
+    /**
+     * @param robotFilePaths Paths to the robot files that take part in the tournament.
+     * @param robotsPerMatch The number of robots in each battle. 2 for one-on-one battles.
+     * @param rounds The number of times every combination of robots is played.
+     * @param replayFolder The folder the replays of the battles are written to, or null if no replays are recorded.
+     * @param seed The seed of the tournament, from which the seeds of the battles are derived.
+     * @param resultCache The results of the battles played before, or null if every battle should be played.
+     * Battles whose replays are recorded are always played.
+     * @param resultStore The store the results of the battles played are appended to, or null if they are not stored.
+     * @param executionMode How the codes of the robots are run.
+     * @throws RobotNotLoadedException If one of the robot files cannot be loaded.
+     */
+    Tournament(List<String> robotFilePaths, int robotsPerMatch, int rounds, Path replayFolder, long seed, MatchResultCache resultCache,
+               MatchResultStore resultStore, Arena.ExecutionMode executionMode) throws RobotNotLoadedException {
+        this.robotFilePaths = new ArrayList<String>(robotFilePaths);
+        this.robotNames = RobotLoader.getRobotNames(robotFilePaths);
+        this.robotLoader = new RobotLoader();
+        this.robotClasses = this.robotLoader.loadClasses(robotFilePaths);
+        this.robotsPerMatch = robotsPerMatch;
+        this.rounds = rounds;
+        this.replayFolder = replayFolder;
+        this.seed = seed;
+        this.resultCache = resultCache;
+        this.resultStore = resultStore;
+        this.executionMode = executionMode;
+    }
+
+    /**
+     * Builds the list of battles of the tournament: every combination of robotsPerMatch robots, repeated for every round.
+     * @return The indexes of the robots playing in each battle.
+     */
+    List<int[]> getPairings() {
+        int robotCount = this.robotClasses.size();
+        List<int[]> combinations = new ArrayList<int[]>();
+        int[] combination = new int[this.robotsPerMatch];
+        for(int i = 0; i < combination.length; i++)
+            combination[i] = i;
+        while(combination[0] <= robotCount - this.robotsPerMatch) {
+            combinations.add(combination.clone());
+            int i = combination.length - 1;
+            while(i > 0 && combination[i] == robotCount - this.robotsPerMatch + i)
+                i--;
+            combination[i]++;
+            for(int j = i + 1; j < combination.length; j++)
+                combination[j] = combination[j - 1] + 1;
+        }
+
+        List<int[]> pairings = new ArrayList<int[]>();
+        for(int round = 0; round < this.rounds; round++)
+            pairings.addAll(combinations);
+        return pairings;
+    }
+
+    /**
+     * Plays all the battles of the tournament on the given pool.
+     * @param pool The pool on which the battles are played in parallel.
+     * @return The results of the battles, in the same order as the pairings.
+     */
+    List<MatchResult> play(List<int[]> pairings, ForkJoinPool pool) throws InterruptedException, ExecutionException {
+        List<Callable<MatchResult>> matches = new ArrayList<Callable<MatchResult>>();
+        for(int m = 0; m < pairings.size(); m++) {
+            int match = m;
+            matches.add(() -> playMatch(match, getRound(match, pairings.size()), pairings.get(match)));
+        }
+
+        List<MatchResult> results = new ArrayList<MatchResult>();
+        for(Future<MatchResult> future : pool.invokeAll(matches))
+            results.add(future.get());
+        return results;
+    }
+
+    /**
+     * Plays a single headless battle between the given robots, recording its replay if a replay folder is given.
+     * If the same battle has been played before, its result is returned without playing it again.
+     * @param match The index of the battle, which the name of its replay file is based on.
+     * @param round The round the battle belongs to.
+     * @param pairing The indexes of the robots playing in the battle.
+     * @return The result of the battle.
+     */
+    private MatchResult playMatch(int match, int round, int[] pairing) throws RobotNotLoadedException, InterruptedException, IOException {
+        List<Class<? extends Robot>> robotClasses = this.robotClasses;
+        List<String> robotNames = this.robotNames;
+        Arena arena = newArena(getSeed(robotClasses, round, pairing));
+        String key = getCacheKey(robotClasses, arena.getSeed(), pairing);
+        MatchResult result = getCachedResult(key);
+        if(result != null)
+            return result;
+
+        if(this.replayFolder != null) {
+            Path replayFile = this.replayFolder.resolve(String.format("match-%05d.replay", match));
+            arena.addListener(new ReplayWriter(replayFile, arena.getWidth(), arena.getHeight()));
+        }
+        for(int robot : pairing) {
+            Robot instance = this.robotLoader.newInstance(RobotLoader.isolate(robotClasses.get(robot)));
+            instance.setName(robotNames.get(robot));
+            arena.addRobot(instance);
+        }
+        result = arena.play();
+        cacheResult(key, result);
+        storeResult(arena.getSeed(), pairing, result);
+        return result;
+    }
+
+    /**
+     * @return A headless arena for a battle of the tournament.
+     */
+    Arena newArena(long seed) {
+        return new Arena(seed, ArenaConfig.defaults, this.executionMode);
+    }
+
+    /**
+     * @param match The index of a battle.
+     * @param matchCount The number of battles of the tournament.
+     * @return The round the battle belongs to.
+     */
+    int getRound(int match, int matchCount) {
+        return match / Math.max(1, matchCount / this.rounds);
+    }
+
+    /**
+     * Derives the seed of a battle from the seed of the tournament, the round and the bytecode of the robots,
+     * so a battle keeps its seed when robots are added to or removed from the tournament.
+     */
+    long getSeed(int round, int[] pairing) {
+        return getSeed(this.robotClasses, round, pairing);
+    }
+
+    private long getSeed(List<Class<? extends Robot>> robotClasses, int round, int[] pairing) {
+        long seed = MatchRandom.mix(this.seed + round);
+        for(int robot : pairing) {
+            String hash = RobotLoader.getBytecodeHash(robotClasses.get(robot));
+            seed = MatchRandom.mix(seed ^ Long.parseUnsignedLong(hash.substring(0, 16), 16));
+        }
+        return seed;
+    }
+
+    /**
+     * @param seed The seed of the battle.
+     * @param pairing The indexes of the robots playing in the battle.
+     * @return The key of the battle in the result cache, or null if its result is not cached,
+     * because there is no cache or the replays of the battles are recorded.
+     */
+    String getCacheKey(long seed, int[] pairing) {
+        return getCacheKey(this.robotClasses, seed, pairing);
+    }
+
+    private String getCacheKey(List<Class<? extends Robot>> robotClasses, long seed, int[] pairing) {
+        if(this.resultCache == null || this.replayFolder != null)
+            return null;
+        List<String> robotHashes = new ArrayList<String>();
+        for(int robot : pairing)
+            robotHashes.add(RobotLoader.getBytecodeHash(robotClasses.get(robot)));
+        return MatchResultCache.keyOf(robotHashes, seed, newArena(seed).getRules());
+    }
+
+    /**
+     * @param key The key of the battle in the result cache, or null.
+     * @return The result of the battle if it has been played before, null otherwise.
+     */
+    MatchResult getCachedResult(String key) {
+        if(key == null)
+            return null;
+        MatchResult result = this.resultCache.get(key);
+        if(result != null)
+            this.reusedResults.incrementAndGet();
+        return result;
+    }
+
+    /**
+     * Stores the result of a battle in the result cache, unless its key is null.
+     */
+    void cacheResult(String key, MatchResult result) {
+        if(key != null)
+            this.resultCache.put(key, result);
+    }
+
+    /**
+     * Appends the result of a battle that has been played to the result store, if any.
+     */
+    void storeResult(long seed, int[] pairing, MatchResult result) {
+        if(this.resultStore == null)
+            return;
+        List<String> robotNames = this.robotNames;
+        List<String> robots = new ArrayList<String>();
+        for(int robot : pairing)
+            robots.add(robotNames.get(robot));
+        try {
+            this.resultStore.append(robots, seed, result);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return The paths to the robot files that take part in the tournament, in the order of their indexes.
+     */
+    List<String> getRobotFilePaths() {
+        return this.robotFilePaths;
+    }
+
+    /**
+     * Replaces the class of a robot file of the tournament, or adds the robot file if it does not take part yet.
+     * The battles that start from now on use the new class. A robot that is added only plays in the pairings built afterwards.
+     * @return Whether the bytecode of the robot has changed.
+     */
+    synchronized boolean updateRobot(String robotFilePath, Class<? extends Robot> robotClass) {
+        Path path = Paths.get(robotFilePath).toAbsolutePath().normalize();
+        List<String> robotFilePaths = new ArrayList<String>(this.robotFilePaths);
+        List<String> robotNames = new ArrayList<String>(this.robotNames);
+        List<Class<? extends Robot>> robotClasses = new ArrayList<Class<? extends Robot>>(this.robotClasses);
+        int robot = 0;
+        while(robot < robotFilePaths.size() && !Paths.get(robotFilePaths.get(robot)).toAbsolutePath().normalize().equals(path))
+            robot++;
+        if(robot == robotFilePaths.size()) {
+            robotFilePaths.add(robotFilePath);
+            robotNames.add(RobotLoader.getUniqueRobotName(robotFilePath, robotNames));
+            robotClasses.add(robotClass);
+        } else if(Objects.equals(RobotLoader.getBytecodeHash(robotClasses.get(robot)), RobotLoader.getBytecodeHash(robotClass))) {
+            return false;
+        } else {
+            robotClasses.set(robot, robotClass);
+        }
+        this.robotFilePaths = robotFilePaths;
+        this.robotNames = robotNames;
+        this.robotClasses = robotClasses;
+        return true;
+    }
+
+    /**
+     * Computes the standings of the robots from the results of the battles.
+     * The ratings are updated battle by battle in the order of the pairings, so they do not depend on which battle finished first.
+     * In a battle with more than 2 robots, the winner beats every other robot, and the other robots draw against each other.
+     * @return The standings of the robots, from the best to the worst.
+     */
+    List<Standing> getStandings(List<int[]> pairings, List<MatchResult> results) {
+        List<Standing> standings = new ArrayList<Standing>();
+        for(String robotName : this.robotNames)
+            standings.add(new Standing(robotName));
+
+        for(int m = 0; m < pairings.size(); m++) {
+            int[] pairing = pairings.get(m);
+            MatchResult result = results.get(m);
+            int winner = result.isDraw() ? -1 : pairing[result.getWinner()];
+
+            double[] ratingChanges = new double[pairing.length];
+            for(int i = 0; i < pairing.length; i++) {
+                Standing standing = standings.get(pairing[i]);
+                if(result.isDraw())
+                    standing.draws++;
+                else if(pairing[i] == winner)
+                    standing.wins++;
+                else
+                    standing.losses++;
+
+                for(int j = 0; j < pairing.length; j++) {
+                    if(i == j)
+                        continue;
+                    double score = pairing[i] == winner ? 1 : pairing[j] == winner ? 0 : 0.5;
+                    double expectedScore = 1 / (1 + Math.pow(10, (standings.get(pairing[j]).rating - standing.rating) / 400));
+                    ratingChanges[i] += ratingFactor * (score - expectedScore);
+                }
+            }
+            for(int i = 0; i < pairing.length; i++)
+                standings.get(pairing[i]).rating += ratingChanges[i];
+        }
+
+        standings.sort(Comparator.comparingInt(Standing::getPoints).thenComparingDouble(Standing::getRating).reversed());
+        return standings;
+    }
+
+    /**
+     * The results of a robot in the tournament.
+     */
+    @Getter
+    static class Standing {
+        private final String name;
+        private int wins;
+        private int draws;
+        private int losses;
+        private double rating = initialRating;
+
+        Standing(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return The points of the robot, 3 for every win and 1 for every draw.
+         */
+        int getPoints() {
+            return 3 * wins + draws;
+        }
+    }
+
+    /**
+     * Entry point of the tournament mode.
+     * Usage: [--players N] [--rounds N] [--threads N] [--replays folder] [--seed N] [--no-cache] [--no-store] [--continuous]
+     * [--coordinator port] [--watch] [robot files or folders...]
+     * The results of the battles are kept in the file given by the robotwars.results.file system property
+     * (build/match-results.txt by default), and battles played before with the same seed are not played again unless --no-cache is given.
+     * The battles played are also appended to the MatchResultStore given by the robotwars.results.store system property
+     * (build/match-results.store by default), unless --no-store is given.
+     * With --continuous, the robot codes run as programs that live for the whole battle, see Arena.ExecutionMode.
+     * With --coordinator, the battles are not played in this process but by the MatchWorkers that connect to the given port.
+     * With --watch, the tournament keeps running: the folders of the robot files are watched, and whenever robot files are created
+     * or changed, they are loaded and the tournament is played again. Only the battles of the changed robots are played again
+     * unless --no-cache is given.
+     * Without any robot files, all the robots in the Robots folder take part.
+     */
+    public static void main(String[] args) throws Exception {
+        int robotsPerMatch = 2;
+        int rounds = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path replayFolder = null;
+        long seed = 0;
+        boolean useCache = true;
+        boolean useStore = true;
+        Integer coordinatorPort = null;
+        boolean watch = false;
+        Arena.ExecutionMode executionMode = Arena.ExecutionMode.TURNS;
+        List<String> robotFilePaths = new ArrayList<String>();
+        for(int i = 0; i < args.length; i++) {
+            switch(args[i]) {
+                case "--players": robotsPerMatch = Integer.parseInt(args[++i]); break;
+                case "--rounds": rounds = Integer.parseInt(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--replays": replayFolder = Files.createDirectories(Paths.get(args[++i])); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--no-cache": useCache = false; break;
+                case "--no-store": useStore = false; break;
+                case "--continuous": executionMode = Arena.ExecutionMode.CONTINUOUS; break;
+                case "--coordinator": coordinatorPort = Integer.parseInt(args[++i]); break;
+                case "--watch": watch = true; break;
+                default: robotFilePaths.addAll(findRobotFiles(new File(args[i])));
+            }
+        }
+        if(robotFilePaths.isEmpty())
+            robotFilePaths.addAll(findRobotFiles(new File("src/main/java/Robots")));
+        if(robotFilePaths.size() < robotsPerMatch)
+            throw new NoRobotFilesFoundException(String.format("At least %d robot files are needed for the tournament", robotsPerMatch));
+        if(coordinatorPort != null && replayFolder != null)
+            throw new IllegalArgumentException("Replays cannot be recorded when the battles are played by workers");
+        if(coordinatorPort != null && watch)
+            throw new IllegalArgumentException("The workers cannot reload the robots, so --watch cannot be used with --coordinator");
+
+        Tournament tournament = new Tournament(robotFilePaths, robotsPerMatch, rounds, replayFolder, seed,
+                useCache ? new MatchResultCache(Paths.get(System.getProperty("robotwars.results.file", "build/match-results.txt"))) : null,
+                useStore ? new MatchResultStore(MatchResultStore.getDefaultFile()) : null, executionMode);
+        try {
+            tournament.run(threads, coordinatorPort, watch);
+        } finally {
+            if(tournament.resultStore != null)
+                tournament.resultStore.close();
+        }
+    }
+
+    /**
+     * Plays the tournament, on this process or on the workers of a coordinator, once or whenever the robot files change.
+     */
+    private void run(int threads, Integer coordinatorPort, boolean watch) throws Exception {
+        if(coordinatorPort != null) {
+            List<int[]> pairings = getPairings();
+            long start = System.nanoTime();
+            List<MatchResult> results = new MatchCoordinator(this, coordinatorPort).play(pairings);
+            printStandings(pairings, results, start);
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        RobotWatcher watcher = watch ? new RobotWatcher(RobotWatcher.getFolders(this.robotFilePaths), this::updateRobot) : null;
+        while(true) {
+            List<int[]> pairings = getPairings();
+            long start = System.nanoTime();
+            this.reusedResults.set(0);
+            List<MatchResult> results = play(pairings, pool);
+            printStandings(pairings, results, start);
+            if(watcher == null)
+                break;
+            System.out.println("Waiting for changes of the robot files...");
+            watcher.awaitChanges();
+        }
+        pool.shutdown();
+    }
+
+    /**
+     * Prints how long the battles took and the standings of the robots.
+     * @param start The System.nanoTime() at which the battles started.
+     */
+    private void printStandings(List<int[]> pairings, List<MatchResult> results, long start) {
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println(String.format("%d battles played in %d ms, %d results reused", results.size(), elapsedMillis,
+                this.reusedResults.get()));
+        System.out.println(String.format("%-20s %6s %6s %6s %6s %8s", "Robot", "Won", "Drawn", "Lost", "Points", "Rating"));
+        for(Standing standing : getStandings(pairings, results)) {
+            System.out.println(String.format("%-20s %6d %6d %6d %6d %8.1f", standing.getName(), standing.getWins(),
+                    standing.getDraws(), standing.getLosses(), standing.getPoints(), standing.getRating()));
+        }
+    }
+
+    /**
+     * @param file A robot file, or a folder containing robot files.
+     * @return The paths of the robot files.
+     */
+    private static List<String> findRobotFiles(File file) {
+        List<String> robotFilePaths = new ArrayList<String>();
+        File[] files = file.isDirectory() ? file.listFiles((folder, name) -> name.endsWith(".robot")) : new File[]{file};
+        if(files != null) {
+            Arrays.sort(files);
+            for(File robotFile : files)
+                robotFilePaths.add(robotFile.getPath());
+        }
+        return robotFilePaths;
+    }
+}
@@ -0,0 +1,32 @@
+package Arena;
+
+import java.util.List;
+
+/**
+ * Runs the codes of the robots of an arena, one turn at a time.
+ */
+interface TurnScheduler {
+    /**
+     * Prepares the running of the code of the given robot, which has just entered the arena.
+     * @param robot The robot to be registered.
+     */
+    void register(Robot robot);
+
+    /**
+     * Runs the codes of the given robots for one turn, and returns once all of them have finished their turn or the turn timeout is reached.
+     * @param robots The robots to be run.
+     * @return The robots that have failed, or have not finished their turn in time. They have been retired already.
+     */
+    List<Robot> runForOneTurn(List<Robot> robots);
+
+    /**
+     * Stops running the code of the given robot, which has left the arena.
+     * @param robot The robot to be retired.
+     */
+    void retire(Robot robot);
+
+    /**
+     * Stops running the codes of all the robots. This function should be called once the battle is over.
+     */
+    void shutdown();
+}
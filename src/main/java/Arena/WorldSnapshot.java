@@ -0,0 +1,292 @@
+package Arena;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable view of the arena at the beginning of a turn, which is what the robots observe while they play the turn.
+ * Since the robots run concurrently, they never read the live state of the arena, which is only changed between turns.
+ * The Arena keeps two snapshots and alternates between them, so the arrays are reused instead of reallocated every turn.
+ * The robots are indexed by their slots in the EntityStore.
+ *
+ * The remaining robots and the rockets are also sorted into cells as large as the scan range of the arena, so a robot scanning
+ * for all enemies or rockets around it only checks the entities of the cells next to its own, without locking anything.
+ */
+class WorldSnapshot {
+    private double[] robotX = new double[0];
+    private double[] robotY = new double[0];
+    private double[] robotDirection = new double[0];
+    private int[] robotHealth = new int[0];
+    private int[] robotSpeed = new int[0];
+    private int[] robotRocketsInTheAir = new int[0];
+    private int[] robotClosestEnemy = new int[0];
+    private int robotSlots;
+    private int scanRange;
+
+    private int[] remainingRobots = new int[0];
+    private final CellIndex robotIndex = new CellIndex();
+
+    private double[] rocketX = new double[0];
+    private double[] rocketY = new double[0];
+    private double[] rocketDirection = new double[0];
+    private int[] rocketSender = new int[0];
+    private int rocketCount;
+    private final CellIndex rocketIndex = new CellIndex();
+
+    /**
+     * Overwrites this snapshot with the current state of the arena and binds the robots to it.
+     * The closest enemy of every robot is resolved here with the spatial index of the arena,
+     * so that all scans of a turn yield the same result at no cost.
+     * This function must only be called while no robot is observing this snapshot.
+     * @param arena The arena to be captured.
+     */
+    void capture(Arena arena) {
+        EntityStore store = arena.getStore();
+        this.scanRange = arena.getConfig().getScanRange();
+        this.robotSlots = store.robotSlots;
+        if(this.robotX.length < this.robotSlots) {
+            int capacity = store.robotX.length;
+            this.robotX = new double[capacity];
+            this.robotY = new double[capacity];
+            this.robotDirection = new double[capacity];
+            this.robotHealth = new int[capacity];
+            this.robotSpeed = new int[capacity];
+            this.robotRocketsInTheAir = new int[capacity];
+            this.robotClosestEnemy = new int[capacity];
+        }
+        System.arraycopy(store.robotX, 0, this.robotX, 0, this.robotSlots);
+        System.arraycopy(store.robotY, 0, this.robotY, 0, this.robotSlots);
+        System.arraycopy(store.robotDirection, 0, this.robotDirection, 0, this.robotSlots);
+        System.arraycopy(store.robotHealth, 0, this.robotHealth, 0, this.robotSlots);
+        System.arraycopy(store.robotSpeed, 0, this.robotSpeed, 0, this.robotSlots);
+        System.arraycopy(store.robotRocketsInTheAir, 0, this.robotRocketsInTheAir, 0, this.robotSlots);
+
+        List<Robot> robots = arena.getRobots();
+        SpatialGrid robotGrid = arena.getRobotGrid();
+        if(this.remainingRobots.length < robots.size())
+            this.remainingRobots = new int[store.robotX.length];
+        for(int i = 0; i < robots.size(); i++) {
+            Robot robot = robots.get(i);
+            int slot = robot.getSlot();
+            this.remainingRobots[i] = slot;
+            this.robotClosestEnemy[slot] = robotGrid.getClosestWithin(this.robotX[slot], this.robotY[slot], this.scanRange, slot, this.robotX, this.robotY);
+            robot.observe(this);
+        }
+        this.robotIndex.build(arena.getWidth(), arena.getHeight(), this.scanRange, robots.size(), this.remainingRobots, this.robotX, this.robotY);
+
+        this.rocketCount = store.rocketCount;
+        if(this.rocketX.length < this.rocketCount) {
+            this.rocketX = new double[store.rocketX.length];
+            this.rocketY = new double[store.rocketY.length];
+            this.rocketDirection = new double[store.rocketDirection.length];
+            this.rocketSender = new int[store.rocketSender.length];
+        }
+        System.arraycopy(store.rocketX, 0, this.rocketX, 0, this.rocketCount);
+        System.arraycopy(store.rocketY, 0, this.rocketY, 0, this.rocketCount);
+        System.arraycopy(store.rocketDirection, 0, this.rocketDirection, 0, this.rocketCount);
+        System.arraycopy(store.rocketSender, 0, this.rocketSender, 0, this.rocketCount);
+        this.rocketIndex.build(arena.getWidth(), arena.getHeight(), this.scanRange, this.rocketCount, null, this.rocketX, this.rocketY);
+    }
+
+    /**
+     * Writes the enemies of the robot within the scanning range into the buffer, closest first,
+     * as Robot.enemyFields values per enemy: x, y, direction and speed.
+     * @param slot The slot of the robot performing the scan.
+     * @param buffer The buffer the enemies are written to. If it is too small, only the closest enemies are written.
+     * @return The number of enemies written.
+     */
+    int scanRobots(int slot, double[] buffer) {
+        int capacity = buffer.length / Robot.enemyFields;
+        int closest = this.robotClosestEnemy[slot];
+        if(capacity == 0 || closest < 0)
+            return 0;
+        writeRobot(buffer, 0, closest);
+        if(capacity == 1)
+            return 1;
+
+        double x = this.robotX[slot];
+        double y = this.robotY[slot];
+        int count = 1;
+        CellIndex cells = this.robotIndex;
+        int row = cells.rowOf(y);
+        int column = cells.columnOf(x);
+        for(int r = Math.max(row - 1, 0); r <= Math.min(row + 1, cells.rows - 1); r++) {
+            for(int c = Math.max(column - 1, 0); c <= Math.min(column + 1, cells.columns - 1); c++) {
+                int cell = r * cells.columns + c;
+                for(int i = cells.cellStart[cell]; i < cells.cellStart[cell + 1]; i++) {
+                    int robot = cells.entities[i];
+                    if(robot == slot || robot == closest)
+                        continue;
+                    double distance = Utils.getDistanceBetween(x, y, this.robotX[robot], this.robotY[robot]);
+                    if(distance > this.scanRange)
+                        continue;
+                    int index = makeRoom(buffer, Robot.enemyFields, 1, count, capacity, x, y, distance);
+                    if(index < 0)
+                        continue;
+                    writeRobot(buffer, index, robot);
+                    count = Math.min(count + 1, capacity);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes the rockets fired by other robots within the scanning range of the robot into the buffer, closest first,
+     * as Robot.rocketFields values per rocket: x, y and direction.
+     * @param slot The slot of the robot performing the scan.
+     * @param buffer The buffer the rockets are written to. If it is too small, only the closest rockets are written.
+     * @return The number of rockets written.
+     */
+    int scanRockets(int slot, double[] buffer) {
+        int capacity = buffer.length / Robot.rocketFields;
+        if(capacity == 0)
+            return 0;
+
+        double x = this.robotX[slot];
+        double y = this.robotY[slot];
+        int count = 0;
+        CellIndex cells = this.rocketIndex;
+        int row = cells.rowOf(y);
+        int column = cells.columnOf(x);
+        for(int r = Math.max(row - 1, 0); r <= Math.min(row + 1, cells.rows - 1); r++) {
+            for(int c = Math.max(column - 1, 0); c <= Math.min(column + 1, cells.columns - 1); c++) {
+                int cell = r * cells.columns + c;
+                for(int i = cells.cellStart[cell]; i < cells.cellStart[cell + 1]; i++) {
+                    int rocket = cells.entities[i];
+                    if(this.rocketSender[rocket] == slot)
+                        continue;
+                    double distance = Utils.getDistanceBetween(x, y, this.rocketX[rocket], this.rocketY[rocket]);
+                    if(distance > this.scanRange)
+                        continue;
+                    int index = makeRoom(buffer, Robot.rocketFields, 0, count, capacity, x, y, distance);
+                    if(index < 0)
+                        continue;
+                    buffer[index * Robot.rocketFields] = this.rocketX[rocket];
+                    buffer[index * Robot.rocketFields + 1] = this.rocketY[rocket];
+                    buffer[index * Robot.rocketFields + 2] = this.rocketDirection[rocket];
+                    count = Math.min(count + 1, capacity);
+                }
+            }
+        }
+        return count;
+    }
+
+    private void writeRobot(double[] buffer, int index, int slot) {
+        buffer[index * Robot.enemyFields] = this.robotX[slot];
+        buffer[index * Robot.enemyFields + 1] = this.robotY[slot];
+        buffer[index * Robot.enemyFields + 2] = this.robotDirection[slot];
+        buffer[index * Robot.enemyFields + 3] = this.robotSpeed[slot];
+    }
+
+    /**
+     * Makes room for an entity in a buffer holding entities sorted by their distance from the given location.
+     * Entities at the same distance keep the order in which they were found.
+     * @param stride The number of values per entity.
+     * @param first The index of the first entry that may be moved.
+     * @param count The number of entities in the buffer.
+     * @param capacity The number of entities that fit into the buffer.
+     * @param distance The distance of the new entity from the location.
+     * @return The index the entity is to be written at, or -1 if the buffer is full of closer entities.
+     */
+    private static int makeRoom(double[] buffer, int stride, int first, int count, int capacity, double x, double y, double distance) {
+        int index = count;
+        while(index > first && Utils.getDistanceBetween(x, y, buffer[(index - 1) * stride], buffer[(index - 1) * stride + 1]) > distance)
+            index--;
+        if(index >= capacity)
+            return -1;
+        int last = Math.min(count, capacity - 1);
+        System.arraycopy(buffer, index * stride, buffer, (index + 1) * stride, (last - index) * stride);
+        return index;
+    }
+
+    double getRobotX(int slot) {
+        return this.robotX[slot];
+    }
+
+    double getRobotY(int slot) {
+        return this.robotY[slot];
+    }
+
+    double getRobotDirection(int slot) {
+        return this.robotDirection[slot];
+    }
+
+    int getRobotHealth(int slot) {
+        return this.robotHealth[slot];
+    }
+
+    int getRobotSpeed(int slot) {
+        return this.robotSpeed[slot];
+    }
+
+    int getRocketsInTheAirFor(int slot) {
+        return this.robotRocketsInTheAir[slot];
+    }
+
+    /**
+     * The entities of the snapshot sorted by the cell they are in, with cells as large as the scan range,
+     * so the entities within the scanning range of a location are in the 3x3 cells around its cell.
+     * It is rebuilt every turn by a counting sort into reused arrays, and is only read while the robots play their turns.
+     */
+    private static class CellIndex {
+        private int cellSize;
+        private int columns;
+        private int rows;
+        /**
+         * The entities of cell c are entities[cellStart[c]] to entities[cellStart[c + 1] - 1].
+         */
+        private int[] cellStart = new int[0];
+        private int[] entities = new int[0];
+        private int[] entityCells = new int[0];
+
+        /**
+         * @param cellSize The size of the cells, which must not be smaller than the scan range.
+         * @param count The number of entities.
+         * @param ids The ids of the entities, or null if they are 0 to count - 1.
+         * @param xs The x coordinates of the entities, indexed by their ids.
+         * @param ys The y coordinates of the entities, indexed by their ids.
+         */
+        void build(int width, int height, int cellSize, int count, int[] ids, double[] xs, double[] ys) {
+            this.cellSize = Math.max(cellSize, 1);
+            this.columns = width / this.cellSize + 1;
+            this.rows = height / this.cellSize + 1;
+            int cells = this.columns * this.rows;
+            if(this.cellStart.length < cells + 1)
+                this.cellStart = new int[cells + 1];
+            else
+                Arrays.fill(this.cellStart, 0, cells + 1, 0);
+            if(this.entities.length < count) {
+                this.entities = new int[Math.max(16, 2 * count)];
+                this.entityCells = new int[this.entities.length];
+            }
+
+            for(int i = 0; i < count; i++) {
+                int id = ids != null ? ids[i] : i;
+                int cell = cellOf(xs[id], ys[id]);
+                this.entityCells[i] = cell;
+                this.cellStart[cell + 1]++;
+            }
+            for(int cell = 0; cell < cells; cell++)
+                this.cellStart[cell + 1] += this.cellStart[cell];
+            // fills every cell from its start, which moves the starts one cell further, and moves them back afterwards
+            for(int i = 0; i < count; i++)
+                this.entities[this.cellStart[this.entityCells[i]]++] = ids != null ? ids[i] : i;
+            for(int cell = cells; cell > 0; cell--)
+                this.cellStart[cell] = this.cellStart[cell - 1];
+            this.cellStart[0] = 0;
+        }
+
+        private int cellOf(double x, double y) {
+            return rowOf(y) * this.columns + columnOf(x);
+        }
+
+        int columnOf(double x) {
+            return Math.max(Math.min((int) (x / this.cellSize), this.columns - 1), 0);
+        }
+
+        int rowOf(double y) {
+            return Math.max(Math.min((int) (y / this.cellSize), this.rows - 1), 0);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package Arena;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks that the MatchResultStore recovers the statistics of the results written before it is reopened,
+ * including after a crash that has cut off or corrupted the last records.
+ */
+public class MatchResultStoreTest {
+    private static final int headerSize = 128;
+    private static final int recordSize = 128;
+    private static final List<String> robots = Arrays.asList("Alpha", "Beta");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+
+    @Before
+    public void setUp() {
+        this.file = this.folder.getRoot().toPath().resolve("results.store");
+    }
+
+    @Test
+    public void reopenedStoreHasTheSameStats() throws IOException {
+        try(MatchResultStore store = new MatchResultStore(this.file)) {
+            append(store, 0, 10);
+            assertStats(store, 10);
+        }
+        try(MatchResultStore store = new MatchResultStore(this.file)) {
+            assertStats(store, 10);
+            append(store, 10, 15);
+        }
+        try(MatchResultStore store = new MatchResultStore(this.file, true)) {
+            assertStats(store, 15);
+        }
+    }
+
+    @Test
+    public void indexIsRebuiltFromTheLog() throws IOException {
+        try(MatchResultStore store = new MatchResultStore(this.file)) {
+            append(store, 0, 10);
+        }
+        Files.delete(indexFile());
+        try(MatchResultStore store = new MatchResultStore(this.file)) {
+            assertStats(store, 10);
+        }
+        Files.write(indexFile(), new byte[]{1, 2, 3});
+        try(MatchResultStore store = new MatchResultStore(this.file)) {
+            assertStats(store, 10);
+        }
+    }
+
+    @Test
+    public void truncatedRecordIsDiscarded() throws IOException {
+        try(MatchResultStore store = new MatchResultStore(this.file)) {
+            append(store, 0, 10);
+        }
+        try(FileChannel channel = FileChannel.open(this.file, StandardOpenOption.WRITE)) {
+            channel.truncate(headerSize + 7 * recordSize + recordSize / 2);
+        }
+        try(MatchResultStore store = new MatchResultStore(this.file)) {
+            assertStats(store, 7);
+            append(store, 7, 12);
+            assertStats(store, 12);
+        }
+        try(MatchResultStore store = new MatchResultStore(this.file)) {
+            assertStats(store, 12);
+        }
+    }
+
+    @Test
+    public void corruptedRecordIsDiscarded() throws IOException {
+        try(MatchResultStore store = new MatchResultStore(this.file)) {
+            append(store, 0, 10);
+        }
+        try(FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // the turns of the last record
+            ByteBuffer turns = ByteBuffer.allocate(4).putInt(0, 12345);
+            channel.write(turns, headerSize + 9 * recordSize + 16);
+        }
+        try(MatchResultStore store = new MatchResultStore(this.file)) {
+            assertStats(store, 9);
+            append(store, 9, 11);
+        }
+        try(MatchResultStore store = new MatchResultStore(this.file)) {
+            assertStats(store, 11);
+        }
+    }
+
+    @Test
+    public void tornRobotNameIsRemoved() throws IOException {
+        try(MatchResultStore store = new MatchResultStore(this.file)) {
+            append(store, 0, 4);
+        }
+        Path robotsFile = Paths.get(String.format("%s.robots", this.file));
+        Files.write(robotsFile, "Gam".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        try(MatchResultStore store = new MatchResultStore(this.file)) {
+            assertStats(store, 4);
+            assertNull(store.getRobotStats("Gam"));
+            store.append(Arrays.asList("Alpha", "Gamma"), 42, new MatchResult(1, 50, new int[]{0, 10}, new int[]{10, 0}));
+        }
+        assertEquals(Arrays.asList("Alpha", "Beta", "Gamma"), Files.readAllLines(robotsFile, StandardCharsets.UTF_8));
+        try(MatchResultStore store = new MatchResultStore(this.file)) {
+            assertEquals(1, store.getRobotStats("Gamma").getWins());
+            assertEquals(5, store.getRobotStats("Alpha").getMatches());
+        }
+    }
+
+    private Path indexFile() {
+        return Paths.get(String.format("%s.index", this.file));
+    }
+
+    /**
+     * Appends the battles with the given numbers. Every third battle is a draw, and the others are won by Alpha and Beta in turn.
+     */
+    private static void append(MatchResultStore store, int from, int to) throws IOException {
+        for(int match = from; match < to; match++)
+            store.append(robots, match, new MatchResult(match % 3 - 1, 100 + match, new int[]{match, 2 * match}, new int[]{2 * match, match}));
+    }
+
+    /**
+     * Checks the statistics against those of the first battles appended by append.
+     */
+    private static void assertStats(MatchResultStore store, int matches) {
+        long alphaWins = 0, betaWins = 0, draws = 0, turns = 0, damage = 0;
+        for(int match = 0; match < matches; match++) {
+            if(match % 3 == 0)
+                draws++;
+            else if(match % 3 == 1)
+                alphaWins++;
+            else
+                betaWins++;
+            turns += 100 + match;
+            damage += match;
+        }
+        assertEquals(matches, store.getRecordCount());
+
+        MatchResultStore.RobotStats alpha = store.getRobotStats("Alpha");
+        assertEquals(matches, alpha.getMatches());
+        assertEquals(alphaWins, alpha.getWins());
+        assertEquals(draws, alpha.getDraws());
+        assertEquals(betaWins, alpha.getLosses());
+        assertEquals(turns, alpha.getTurns());
+        assertEquals(damage, alpha.getDamageDealt());
+        assertEquals(2 * damage, alpha.getDamageTaken());
+
+        MatchResultStore.PairingStats pairing = store.getPairingStats("Beta", "Alpha");
+        assertEquals(matches, pairing.getMatches());
+        assertEquals(betaWins, pairing.getWins());
+        assertEquals(alphaWins, pairing.getLosses());
+        assertEquals(draws, pairing.getDraws());
+    }
+}
@@ -0,0 +1,128 @@
+package Arena;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Records a battle with the ReplayWriter and checks that the ReplayPlayer plays back what the arena has played,
+ * both from the beginning and after jumping to turns before, at and after the keyframes.
+ */
+public class ReplayRoundTripTest {
+    private static final int maxTurns = 3 * ReplayFormat.keyframeInterval + 50;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+    private TurnRecorder live;
+
+    @Before
+    public void setUp() throws IOException {
+        this.file = this.folder.getRoot().toPath().resolve("battle.replay");
+        Properties properties = new Properties();
+        properties.setProperty("maxTurns", Integer.toString(maxTurns));
+        Arena arena = new Arena(42, ArenaConfig.defaults.withProperties(properties), Arena.ExecutionMode.TURNS);
+        this.live = new TurnRecorder();
+        arena.addListener(new ReplayWriter(this.file, arena.getWidth(), arena.getHeight()));
+        arena.addListener(this.live);
+        for(int i = 0; i < 3; i++) {
+            arena.addRobot(new SyntheticRobots.Skirmisher());
+            arena.addRobot(new SyntheticRobots.Turret());
+        }
+        try {
+            arena.play(0);
+        } catch(InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Test
+    public void playbackMatchesTheBattle() throws IOException {
+        ReplayPlayer player = new ReplayPlayer(this.file);
+        assertEquals(this.live.turns.size() - 1, player.getLastTurn());
+
+        TurnRecorder replayed = new TurnRecorder();
+        player.seek(0, replayed);
+        while(player.next(replayed)) { }
+        assertTrue(player.isFinished());
+        assertEquals(this.live.turns, replayed.turns);
+        assertEquals(this.live.outcome, replayed.outcome);
+    }
+
+    @Test
+    public void seekMatchesTheBattle() throws IOException {
+        ReplayPlayer player = new ReplayPlayer(this.file);
+        int lastTurn = player.getLastTurn();
+        int interval = ReplayFormat.keyframeInterval;
+        int[] turns = {2 * interval + 10, interval - 1, interval, interval + 1, 0, lastTurn, 3 * interval - 1};
+        for(int turn : turns) {
+            TurnRecorder replayed = new TurnRecorder();
+            player.seek(turn, replayed);
+            assertEquals(turn, player.getTurn());
+            assertEquals(String.format("turn %d", turn), this.live.turns.get(turn), replayed.turns.get(0));
+
+            // playback goes on from the turn it has jumped to
+            for(int next = turn + 1; next <= Math.min(turn + 5, lastTurn); next++) {
+                assertTrue(player.next(replayed));
+                assertEquals(String.format("turn %d", next), this.live.turns.get(next), replayed.turns.get(next - turn));
+            }
+        }
+    }
+
+    @Test
+    public void seekIsClampedToTheLastTurn() throws IOException {
+        ReplayPlayer player = new ReplayPlayer(this.file);
+        TurnRecorder replayed = new TurnRecorder();
+        player.seek(10 * maxTurns, replayed);
+        assertEquals(player.getLastTurn(), player.getTurn());
+        assertEquals(this.live.turns.get(player.getLastTurn()), replayed.turns.get(0));
+        assertFalse(player.next(replayed));
+        assertEquals(this.live.outcome, replayed.outcome);
+    }
+
+    /**
+     * Records the state of the robots and rockets at the end of every turn, as the replay stores it, and the outcome of the battle.
+     * The robots and rockets are sorted, as the order in which they are listed is not recorded.
+     */
+    private static class TurnRecorder implements ArenaListener {
+        private final List<List<String>> turns = new ArrayList<List<String>>();
+        private String outcome;
+
+        @Override
+        public void turnEnded(int turn, List<Robot> robots, List<Rocket> rockets) {
+            List<String> state = new ArrayList<String>();
+            for(Robot robot : robots)
+                state.add(String.format("robot %d %s %d %d %d %d %d", robot.getSlot(), robot.getName(),
+                        ReplayFormat.quantize(robot.getCurrentX()), ReplayFormat.quantize(robot.getCurrentY()),
+                        ReplayFormat.quantize(robot.getCurrentDirection()), robot.getCurrentHealth(), robot.getCurrentSpeed()));
+            for(Rocket rocket : rockets)
+                state.add(String.format("rocket %d %d %d", rocket.getSender().getSlot(),
+                        ReplayFormat.quantize(rocket.getX()), ReplayFormat.quantize(rocket.getY())));
+            Collections.sort(state);
+            this.turns.add(state);
+        }
+
+        @Override
+        public void winnerDeclared(Robot winner) {
+            this.outcome = String.format("winner %d", winner.getSlot());
+        }
+
+        @Override
+        public void drawDeclared() {
+            this.outcome = "draw";
+        }
+    }
+}